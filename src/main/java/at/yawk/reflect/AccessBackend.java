@@ -0,0 +1,35 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+/**
+ * How selected members are accessed, see {@link Members#backend(AccessBackend)}.
+ *
+ * All backends report bad accesses the same way core reflection does: IllegalArgumentException for wrong receivers,
+ * argument counts and types, NullPointerException for a missing receiver, and an UncheckedReflectiveOperationException
+ * caused by an InvocationTargetException for exceptions thrown by the member. Switching backends never changes which
+ * exceptions are thrown.
+ *
+ * @author yawkat
+ */
+public enum AccessBackend {
+    /**
+     * Use core reflection (Field#get, Method#invoke, ...).
+     */
+    REFLECTION,
+    /**
+     * Use method handles. They are created once per member and cached, which makes the first access more expensive
+     * but repeated accesses cheaper.
+     */
+    METHOD_HANDLES,
+    /**
+     * Start with core reflection and switch to method handles once a member was accessed often enough (100 times by
+     * default, see the at.yawk.reflect.adaptiveThreshold system property). Use counts are tracked per member, so this
+     * also works for selectors that are built again for every access. This is the default.
+     */
+    ADAPTIVE,
+}
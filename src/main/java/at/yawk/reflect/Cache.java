@@ -7,65 +7,372 @@
 package at.yawk.reflect;
 
 import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * @author yawkat
  */
 class Cache {
-    private static final Map<Class<?>, Reference<Method[]>> methodCache = new WeakHashMap<>();
-
-    static synchronized Method[] getMethods(Class<?> clazz) {
-        Reference<Method[]> cached = methodCache.get(clazz);
-        if (cached != null) {
-            Method[] methods = cached.get();
-            if (methods != null) {
-                return methods.clone();
+    private static final ClassValue<ClassInfo> classInfo = new ClassValue<ClassInfo>() {
+        @Override
+        protected ClassInfo computeValue(Class<?> type) {
+            return new ClassInfo(type);
+        }
+    };
+
+    static ClassInfo info(Class<?> clazz) {
+        return classInfo.get(clazz);
+    }
+
+    /**
+     * The ClassInfo for a value that refers to both given classes, such as a functional interface and the method
+     * implementing it. A ClassInfo lives as long as its class, so the value goes to the class whose loader delegates
+     * to the loader of the other one: it is then dropped with the shorter-lived loader instead of keeping it alive
+     * from, say, a JDK class.
+     */
+    static ClassInfo owner(Class<?> a, Class<?> b) {
+        return info(delegatesTo(a.getClassLoader(), b.getClassLoader()) ? a : b);
+    }
+
+    /**
+     * Whether the given loader is the given parent or one of its descendants. Every loader delegates to the boot
+     * loader (null).
+     */
+    private static boolean delegatesTo(ClassLoader loader, ClassLoader parent) {
+        if (parent == null) { return true; }
+        try {
+            for (ClassLoader l = loader; l != null; l = l.getParent()) {
+                if (l == parent) { return true; }
             }
+        } catch (SecurityException ignored) {
+            // can't walk the hierarchy, assume unrelated
         }
-        List<Method> l = new ArrayList<>();
-        collectDeclaredMethods(clazz, l);
-        // We should probably use a weak ref on the methods so they don't keep their declaring
-        // classes from being collected, but the overhead of an array of weak refs would be too
-        // high. We also can't weak ref the array itself as it would be collected immediately.
-        // Instead, we will settle for a soft ref for now.
-        Method[] methods = l.toArray(new Method[l.size()]);
-        methodCache.put(clazz, new SoftReference<>(methods));
-        return methods.clone();
+        return false;
     }
 
-    private static synchronized void collectDeclaredMethods(Class<?> clazz, List<Method> into) {
-        if (clazz == null) { return; } // recursion end
+    /*
+     * Eviction: ClassInfo instances are only reachable through their class, so they can be unloaded together. To
+     * find them for eviction and invalidation, those holding any cached values are also kept in a registry through
+     * weak references.
+     */
 
-        int foundBefore = into.size();
-        outer:
-        for (Method method : clazz.getDeclaredMethods()) {
-            // do not use foreach here, we don't want to loop over elements added in #outer!
-            //noinspection ForLoopReplaceableByForEach
-            for (int i = 0; i < foundBefore; i++) {
-                Method other = into.get(i);
-                if (areEquivalent(other, method)) {
-                    continue outer;
+    static final CacheStatistics statistics = new CacheStatistics();
+
+    static volatile long maximumWeight = 1_000_000;
+    static volatile EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+
+    /**
+     * Logical clock for LRU and LFU, advanced whenever something new is cached. Hits never write to shared state other
+     * than the ClassInfo itself, and only once per tick.
+     */
+    private static final AtomicLong clock = new AtomicLong();
+    /**
+     * Approximate total weight of all registered ClassInfo objects. Corrected on every eviction run.
+     */
+    private static final AtomicLong totalWeight = new AtomicLong();
+    private static final Set<Reference<ClassInfo>> registry = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<ClassInfo> collected = new ReferenceQueue<>();
+    private static final Lock evictionLock = new ReentrantLock();
+
+    static long tick() {
+        return clock.get();
+    }
+
+    static Reference<ClassInfo> newRegistryReference(ClassInfo info) {
+        return new WeakReference<>(info, collected);
+    }
+
+    /**
+     * Called after a value with the given weight was cached in the given ClassInfo. Eviction never locks ClassInfo
+     * objects, so this is safe to call while resolving another class.
+     */
+    static void admit(ClassInfo info, int weight) {
+        clock.incrementAndGet();
+        info.touch();
+        registry.add(info.registryReference);
+        if (totalWeight.addAndGet(weight) > maximumWeight) {
+            evictIfNecessary();
+        }
+    }
+
+    static void evictIfNecessary() {
+        // only one thread evicts at a time, everyone else just carries on
+        if (!evictionLock.tryLock()) { return; }
+        try {
+            Reference<?> ref;
+            while ((ref = collected.poll()) != null) {
+                //noinspection SuspiciousMethodCalls
+                registry.remove(ref);
+            }
+
+            List<ClassInfo> live = new ArrayList<>();
+            long total = 0;
+            for (Reference<ClassInfo> reference : registry) {
+                ClassInfo info = reference.get();
+                long weight = info == null ? 0 : info.weight();
+                if (weight == 0) {
+                    registry.remove(reference);
+                } else {
+                    live.add(info);
+                    total += weight;
                 }
             }
-            if (!method.isAccessible()) {
-                try {
-                    method.setAccessible(true);
-                } catch (SecurityException e) {
-                    // silently fail and don't add to result list
-                    continue;
+
+            long max = maximumWeight;
+            if (total > max) {
+                Object event = CacheEvents.instance.beginEviction();
+                long before = total;
+                int classes = 0;
+                switch (evictionPolicy) {
+                case LRU:
+                    live.sort(Comparator.comparingLong(info -> info.lastAccess));
+                    break;
+                case LFU:
+                    live.sort(Comparator.<ClassInfo>comparingLong(info -> info.useCount)
+                                      .thenComparingLong(info -> info.lastAccess));
+                    break;
+                default:
+                    throw new AssertionError(evictionPolicy);
+                }
+                // go a bit below the maximum so we don't have to do this again right away
+                long target = max - max / 4;
+                for (ClassInfo info : live) {
+                    if (total <= target) { break; }
+                    total -= info.weight();
+                    remove(info, true);
+                    classes++;
                 }
+                CacheEvents.instance.endEviction(event, classes, before - total, total);
             }
-            into.add(method);
+            totalWeight.set(total);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    static <T, R> FieldAccessor<T, R> fieldHandle(Field field) {
+        return info(field.getDeclaringClass()).handle(field, MethodHandleFieldAccessor::new);
+    }
+
+    static Invoker methodHandle(Method method) {
+        return info(method.getDeclaringClass()).handle(method, MethodHandleInvoker::of);
+    }
+
+    static Invoker constructorHandle(Constructor<?> constructor) {
+        return info(constructor.getDeclaringClass()).handle(constructor, MethodHandleInvoker::of);
+    }
+
+    /**
+     * The method handle accessor of the given member: #fieldHandle for fields, #methodHandle or #constructorHandle
+     * otherwise.
+     */
+    static Object handle(Member member) {
+        if (member instanceof Field) {
+            return fieldHandle((Field) member);
+        } else if (member instanceof Method) {
+            return methodHandle((Method) member);
+        } else {
+            return constructorHandle((Constructor<?>) member);
+        }
+    }
+
+    /**
+     * Count a use of the given member for AccessBackend.ADAPTIVE and return its #handle if it should be accessed
+     * through method handles, or null.
+     */
+    static Object hotHandle(Member member) {
+        return info(member.getDeclaringClass()).useCounter(member).hot(member);
+    }
+
+    /**
+     * The offset based writer used for final fields, or null if final fields have to be written through the legacy
+     * modifiers toggle (no Unsafe, or fields without a stable offset).
+     */
+    @SuppressWarnings("unchecked")
+    static FieldAccessor<Object, Object> finalWriter(Field field) {
+        if (!Unsafes.hasUnsafe()) { return null; }
+        Object writer = info(field.getDeclaringClass()).finalWriter(field, Cache::createFinalWriter);
+        // the field itself is cached as a marker for fields without an offset
+        return writer instanceof FieldAccessor ? (FieldAccessor<Object, Object>) writer : null;
+    }
+
+    private static Object createFinalWriter(Field field) {
+        try {
+            return new UnsafeFieldAccessor<>(field, StoreOrdering.PLAIN);
+        } catch (UnsupportedOperationException e) {
+            return field;
+        }
+    }
+
+    static void preload(Class<?> clazz) {
+        ClassInfo info = info(clazz);
+        info.fields();
+        info.methods();
+        info.constructors();
+    }
+
+    static void invalidate(Class<?> clazz) {
+        // there is no way to check for a ClassValue without computing it, but an empty ClassInfo is cheap
+        ClassInfo info = classInfo.get(clazz);
+        classInfo.remove(clazz);
+        long weight = info.weight();
+        if (weight != 0) {
+            statistics.invalidations.increment();
+            totalWeight.addAndGet(-weight);
+        }
+        remove(info, false);
+    }
+
+    static void invalidateIf(Predicate<Class<?>> predicate) {
+        for (Reference<ClassInfo> reference : registry) {
+            ClassInfo info = reference.get();
+            if (info != null && predicate.test(info.type)) {
+                invalidate(info.type);
+            }
+        }
+    }
+
+    /**
+     * Drop all classes defined by the given loader, and everything cached for other classes that refers to them.
+     */
+    static void invalidate(ClassLoader loader) {
+        invalidateIf(type -> type.getClassLoader() == loader);
+        for (Reference<ClassInfo> reference : registry) {
+            ClassInfo info = reference.get();
+            if (info != null) {
+                long removed = info.clearReferencesTo(loader);
+                if (removed != 0) {
+                    statistics.invalidations.increment();
+                    totalWeight.addAndGet(-removed);
+                }
+            }
+        }
+    }
+
+    private static void remove(ClassInfo info, boolean evicted) {
+        // unregister first: if it is refilled concurrently, it will be registered again
+        registry.remove(info.registryReference);
+        info.clear(evicted);
+    }
+
+    static void forEachCached(Consumer<ClassInfo> action) {
+        for (Reference<ClassInfo> reference : registry) {
+            ClassInfo info = reference.get();
+            if (info != null && info.weight() != 0) {
+                action.accept(info);
+            }
+        }
+    }
+
+    /*
+     * Member tables are built on top of the (cached) tables of the direct supertypes: first the members declared by
+     * the class itself, then the table of the superclass, then the tables of the interfaces. This yields the same
+     * order as a depth-first walk over the hierarchy, but supertypes are only resolved once and their tables share
+     * the same Member instances with all of their subtypes.
+     */
+
+    static Method[] collectMethods(Class<?> clazz) {
+        List<Method> l = new ArrayList<>();
+        Map<Signature, List<Method>> signatures = new HashMap<>();
+        addMethods(info(clazz).declaredMethods(), l, signatures);
+        Class<?> superclass = clazz.getSuperclass();
+        if (superclass != null) {
+            addMethods(info(superclass).methods().members, l, signatures);
         }
-        collectDeclaredMethods(clazz.getSuperclass(), into);
         for (Class<?> iface : clazz.getInterfaces()) {
-            collectDeclaredMethods(iface, into);
+            addMethods(info(iface).methods().members, l, signatures);
+        }
+        return l.toArray(new Method[l.size()]);
+    }
+
+    static Method[] collectDeclaredMethods(Class<?> clazz) {
+        Method[] declared = clazz.getDeclaredMethods();
+        int length = 0;
+        for (Method method : declared) {
+            if (makeAccessible(method)) {
+                declared[length++] = method;
+            }
+        }
+        return length == declared.length ? declared : Arrays.copyOf(declared, length);
+    }
+
+    /**
+     * Add a segment of methods, skipping those overridden by a previous segment.
+     *
+     * @param signatures The methods of previous segments by name and parameter types. Only the return type and
+     *                   visibility still need to be checked for candidates from this map.
+     */
+    private static void addMethods(Method[] segment, List<Method> into,
+                                   Map<Signature, List<Method>> signatures) {
+        // don't register signatures of this segment until we're done with it: it was deduplicated already (or, for
+        // declared methods, contains no overrides: bridge methods share the signature of the method they bridge)
+        Signature[] added = new Signature[segment.length];
+        outer:
+        for (int i = 0; i < segment.length; i++) {
+            Method method = segment[i];
+            Signature signature = new Signature(method);
+            List<Method> candidates = signatures.get(signature);
+            if (candidates != null) {
+                for (Method other : candidates) {
+                    // same method reached through two paths (interface diamond)
+                    if (other == method) { continue outer; }
+                    if (!Modifier.isPrivate(other.getModifiers()) &&
+                        other.getReturnType().isAssignableFrom(method.getReturnType())) {
+                        continue outer;
+                    }
+                }
+            }
+            into.add(method);
+            added[i] = signature;
+        }
+        for (int i = 0; i < segment.length; i++) {
+            if (added[i] != null) {
+                signatures.computeIfAbsent(added[i], k -> new ArrayList<>(1)).add(segment[i]);
+            }
+        }
+    }
+
+    /**
+     * Name and parameter types of a method, the part of #areEquivalent that can be hashed.
+     */
+    private static final class Signature {
+        private final String name;
+        private final Class<?>[] parameterTypes;
+        private final int hash;
+
+        Signature(Method method) {
+            this.name = method.getName();
+            this.parameterTypes = method.getParameterTypes();
+            this.hash = name.hashCode() * 31 + Arrays.hashCode(parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof Signature)) { return false; }
+            Signature other = (Signature) o;
+            return hash == other.hash &&
+                   name.equals(other.name) &&
+                   Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
@@ -95,72 +402,63 @@ class Cache {
         modifiersField = f;
     }
 
-    private static final Map<Class<?>, Reference<Field[]>> fieldCache = new WeakHashMap<>();
-
-    static synchronized Field[] getFields(Class<?> clazz) {
-        Reference<Field[]> cached = fieldCache.get(clazz);
-        if (cached != null) {
-            Field[] fields = cached.get();
-            if (fields != null) {
-                return fields.clone();
+    static Field[] collectDeclaredFields(Class<?> clazz) {
+        Field[] declared = clazz.getDeclaredFields();
+        int length = 0;
+        for (Field field : declared) {
+            if (makeAccessible(field)) {
+                declared[length++] = field;
             }
         }
-        List<Field> l = new ArrayList<>();
-        collectDeclaredFields(clazz, l);
-        // We should probably use a weak ref on the methods so they don't keep their declaring
-        // classes from being collected, but the overhead of an array of weak refs would be too
-        // high. We also can't weak ref the array itself as it would be collected immediately.
-        // Instead, we will settle for a soft ref for now.
-        Field[] fields = l.toArray(new Field[l.size()]);
-        fieldCache.put(clazz, new SoftReference<>(fields));
-        return fields.clone();
-    }
-
-    private static synchronized void collectDeclaredFields(Class<?> clazz, List<Field> into) {
-        if (clazz == null) { return; } // recursion end
-
-        for (Field field : clazz.getDeclaredFields()) {
-            if (!field.isAccessible()) {
-                try {
-                    field.setAccessible(true);
-                } catch (SecurityException e) {
-                    // silently fail and don't add to result list
-                    continue;
+        return length == declared.length ? declared : Arrays.copyOf(declared, length);
+    }
+
+    static Field[] collectFields(Class<?> clazz) {
+        List<Field> l = new ArrayList<>(Arrays.asList(info(clazz).declaredFields()));
+        Class<?> superclass = clazz.getSuperclass();
+        if (superclass != null) {
+            Collections.addAll(l, info(superclass).fields().members);
+        }
+        Class<?>[] interfaces = clazz.getInterfaces();
+        if (interfaces.length != 0) {
+            // static interface fields may be reachable through more than one path
+            Set<Field> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            seen.addAll(l);
+            for (Class<?> iface : interfaces) {
+                for (Field field : info(iface).fields().members) {
+                    if (seen.add(field)) {
+                        l.add(field);
+                    }
                 }
             }
-            into.add(field);
-        }
-        collectDeclaredFields(clazz.getSuperclass(), into);
-        for (Class<?> iface : clazz.getInterfaces()) { // static fields
-            collectDeclaredFields(iface, into);
         }
+        return l.toArray(new Field[l.size()]);
     }
 
     //////////////
 
-    private static final Map<Class<?>, Reference<Constructor<?>[]>> constructorCache = new WeakHashMap<>();
-
-    static synchronized Constructor<?>[] getConstructors(Class<?> clazz) {
-        Reference<Constructor<?>[]> cached = constructorCache.get(clazz);
-        if (cached != null) {
-            Constructor<?>[] methods = cached.get();
-            if (methods != null) {
-                return methods.clone();
-            }
-        }
+    static Constructor<?>[] collectConstructors(Class<?> clazz) {
         Constructor<?>[] constructors = clazz.getDeclaredConstructors();
         for (Constructor<?> constructor : constructors) {
-            if (!constructor.isAccessible()) {
-                try {
-                    constructor.setAccessible(true);
-                } catch (SecurityException ignored) {}
+            // constructors are kept even if they can't be made accessible
+            makeAccessible(constructor);
+        }
+        return constructors;
+    }
+
+    /**
+     * @return false if the member could not be made accessible.
+     */
+    private static boolean makeAccessible(AccessibleObject member) {
+        if (!member.isAccessible()) {
+            try {
+                member.setAccessible(true);
+            } catch (RuntimeException e) {
+                // SecurityException, or InaccessibleObjectException for module-encapsulated members on java 9+:
+                // silently fail and don't add to result list
+                return false;
             }
         }
-        // We should probably use a weak ref on the methods so they don't keep their declaring
-        // classes from being collected, but the overhead of an array of weak refs would be too
-        // high. We also can't weak ref the array itself as it would be collected immediately.
-        // Instead, we will settle for a soft ref for now.
-        constructorCache.put(clazz, new SoftReference<>(constructors));
-        return constructors.clone();
+        return true;
     }
 }
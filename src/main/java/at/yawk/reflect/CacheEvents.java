@@ -0,0 +1,44 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+/**
+ * Flight recorder events of the member cache. This base class does nothing, {@link JfrCacheEvents} is used instead if
+ * the jdk.jfr API is present, so the library still works on JVMs without it.
+ *
+ * @author yawkat
+ */
+class CacheEvents {
+    static final CacheEvents instance = create();
+
+    private static CacheEvents create() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return new JfrCacheEvents();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return new CacheEvents();
+        }
+    }
+
+    /**
+     * @return An event handle to pass to #endBuild, or null.
+     */
+    Object beginBuild() {
+        return null;
+    }
+
+    void endBuild(Object event, Class<?> type, int kind, int members) {}
+
+    /**
+     * @return An event handle to pass to #endEviction, or null.
+     */
+    Object beginEviction() {
+        return null;
+    }
+
+    void endEviction(Object event, int classes, long evictedWeight, long remainingWeight) {}
+}
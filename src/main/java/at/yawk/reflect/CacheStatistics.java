@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author yawkat
+ */
+final class CacheStatistics implements MemberCacheMXBean {
+    static final int FIELD = 0;
+    static final int METHOD = 1;
+    static final int CONSTRUCTOR = 2;
+    static final String[] KIND_NAMES = { "field", "method", "constructor" };
+
+    /**
+     * Guess at the size of one Field or Method object including what it typically caches (generic signature,
+     * accessor), used for #getEstimatedRetainedBytes.
+     */
+    private static final long MEMBER_BYTES = 160;
+    private static final long REFERENCE_BYTES = 8;
+
+    final LongAdder[] hits = adders();
+    final LongAdder[] misses = adders();
+    final LongAdder[] evictions = adders();
+    final LongAdder invalidations = new LongAdder();
+    final LongAdder buildTimeNanos = new LongAdder();
+
+    private static LongAdder[] adders() {
+        return new LongAdder[]{ new LongAdder(), new LongAdder(), new LongAdder() };
+    }
+
+    @Override
+    public long getFieldHits() {
+        return hits[FIELD].sum();
+    }
+
+    @Override
+    public long getFieldMisses() {
+        return misses[FIELD].sum();
+    }
+
+    @Override
+    public long getFieldEvictions() {
+        return evictions[FIELD].sum();
+    }
+
+    @Override
+    public long getMethodHits() {
+        return hits[METHOD].sum();
+    }
+
+    @Override
+    public long getMethodMisses() {
+        return misses[METHOD].sum();
+    }
+
+    @Override
+    public long getMethodEvictions() {
+        return evictions[METHOD].sum();
+    }
+
+    @Override
+    public long getConstructorHits() {
+        return hits[CONSTRUCTOR].sum();
+    }
+
+    @Override
+    public long getConstructorMisses() {
+        return misses[CONSTRUCTOR].sum();
+    }
+
+    @Override
+    public long getConstructorEvictions() {
+        return evictions[CONSTRUCTOR].sum();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public long getBuildTimeNanos() {
+        return buildTimeNanos.sum();
+    }
+
+    @Override
+    public int getCachedClasses() {
+        int[] classes = { 0 };
+        Cache.forEachCached(info -> classes[0]++);
+        return classes[0];
+    }
+
+    @Override
+    public long getCachedMembers() {
+        long[] weight = { 0 };
+        Cache.forEachCached(info -> weight[0] += info.weight());
+        return weight[0];
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+        long[] bytes = { 0 };
+        Cache.forEachCached(info -> {
+            // member objects are only owned by the declared member arrays, the tables just refer to them
+            bytes[0] += info.declaredWeight() * MEMBER_BYTES + info.weight() * REFERENCE_BYTES;
+        });
+        return bytes[0];
+    }
+
+    @Override
+    public long getMaximumWeight() {
+        return MemberCache.getMaximumWeight();
+    }
+
+    @Override
+    public void setMaximumWeight(long maximumWeight) {
+        MemberCache.setMaximumWeight(maximumWeight);
+    }
+}
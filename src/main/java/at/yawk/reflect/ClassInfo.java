@@ -0,0 +1,416 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.ref.Reference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Per-class reflection metadata. Instances are attached to their class through a {@link ClassValue} (see {@link
+ * Cache#info(Class)}) so lookups do not need any global lock. Reading an already resolved value is a single volatile
+ * read; resolving a value locks only this instance, so concurrent misses for the same class resolve once.
+ *
+ * @author yawkat
+ */
+final class ClassInfo {
+    final Class<?> type;
+    final Reference<ClassInfo> registryReference = Cache.newRegistryReference(this);
+
+    /**
+     * Cache#tick of the last use, for LRU eviction.
+     */
+    volatile long lastAccess;
+    /**
+     * Number of ticks this class was used in, for LFU eviction. Updates may be lost, this is only an estimate.
+     */
+    volatile int useCount;
+    /**
+     * Whether this class is deeply immutable, or null if not analyzed yet, see Immutables.
+     */
+    volatile Boolean immutable;
+
+    private final Slot<Field[]> declaredFields = new Slot<>(CacheStatistics.FIELD);
+    private final Slot<Method[]> declaredMethods = new Slot<>(CacheStatistics.METHOD);
+    private final Slot<MemberTable<Field>> fields = new Slot<>(CacheStatistics.FIELD);
+    private final Slot<MemberTable<Method>> methods = new Slot<>(CacheStatistics.METHOD);
+    private final Slot<MemberTable<Constructor<?>>> constructors = new Slot<>(CacheStatistics.CONSTRUCTOR);
+    /**
+     * Method handle based accessors of members declared by this class, see Cache#fieldHandle.
+     */
+    private final ConcurrentMap<Member, Object> handles = new ConcurrentHashMap<>();
+    /**
+     * Offset based writers of final fields declared by this class, see Cache#finalWriter.
+     */
+    private final ConcurrentMap<Member, Object> finalWriters = new ConcurrentHashMap<>();
+    /**
+     * Use counters of members declared by this class for AccessBackend.ADAPTIVE, see Cache#hotHandle.
+     */
+    private final ConcurrentMap<Member, Object> useCounters = new ConcurrentHashMap<>();
+    /**
+     * Results of MemberQuery objects applied to this class. The queries are only weakly reachable from here since
+     * their predicates may come from any loader, see MemberQuery.Key.
+     */
+    private final ConcurrentMap<MemberQuery.Key, Member[]> queries = new ConcurrentHashMap<>();
+    /**
+     * Functional interface factories by Lambdas.Key, for members declared by this class or for this interface,
+     * whichever is unloaded first (see Cache#owner).
+     */
+    private final ConcurrentMap<Lambdas.Key, Object> lambdas = new ConcurrentHashMap<>();
+    /**
+     * Resolved mirror interfaces for this class or of this interface by MirrorPlan.Key, like #lambdas.
+     */
+    private final ConcurrentMap<MirrorPlan.Key, Object> mirrors = new ConcurrentHashMap<>();
+    /**
+     * Field layout for copying instances of this class, see UnsafeClonerBuilder.
+     */
+    private volatile ClonePlan clonePlan;
+
+    ClassInfo(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * The accessible fields declared by this class itself.
+     */
+    Field[] declaredFields() {
+        return declaredFields.get(this, info -> Cache.collectDeclaredFields(info.type));
+    }
+
+    /**
+     * The accessible methods declared by this class itself.
+     */
+    Method[] declaredMethods() {
+        return declaredMethods.get(this, info -> Cache.collectDeclaredMethods(info.type));
+    }
+
+    MemberTable<Field> fields() {
+        return fields.get(this, info -> new MemberTable<>(Cache.collectFields(info.type)));
+    }
+
+    MemberTable<Method> methods() {
+        return methods.get(this, info -> new MemberTable<>(Cache.collectMethods(info.type)));
+    }
+
+    MemberTable<Constructor<?>> constructors() {
+        return constructors.get(this, info -> new MemberTable<>(Cache.collectConstructors(info.type)));
+    }
+
+    /**
+     * Record a use of this class for eviction.
+     */
+    void touch() {
+        long now = Cache.tick();
+        // avoid writing (and contending for the cache line) on every single hit
+        if (lastAccess != now) {
+            lastAccess = now;
+            //noinspection NonAtomicOperationOnVolatileField
+            useCount++;
+        }
+    }
+
+    /**
+     * Number of member references currently cached for this class.
+     */
+    long weight() {
+        return (long) declaredFields.weight() + declaredMethods.weight() +
+               fields.weight() + methods.weight() + constructors.weight() + handles.size() +
+               finalWriters.size() + useCounters.size() + lambdas.size() + mirrors.size() +
+               queryWeight() + (clonePlan == null ? 0 : 1);
+    }
+
+    /**
+     * One per cached query result plus the members it holds. Results of queries that were collected are dropped
+     * here, so they don't outlive the next eviction run.
+     */
+    private long queryWeight() {
+        long weight = 0;
+        for (Map.Entry<MemberQuery.Key, Member[]> entry : queries.entrySet()) {
+            if (entry.getKey().get() == null) {
+                queries.remove(entry.getKey(), entry.getValue());
+            } else {
+                weight += 1 + entry.getValue().length;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Number of member references in the declared member arrays, which hold the only copy of each member.
+     */
+    long declaredWeight() {
+        return (long) declaredFields.weight() + declaredMethods.weight() + constructors.weight();
+    }
+
+    /**
+     * Drop all cached values.
+     *
+     * @param evicted Whether to count this as an eviction in the statistics.
+     */
+    void clear(boolean evicted) {
+        declaredFields.clear(evicted);
+        declaredMethods.clear(evicted);
+        fields.clear(evicted);
+        methods.clear(evicted);
+        constructors.clear(evicted);
+        handles.clear();
+        finalWriters.clear();
+        useCounters.clear();
+        lambdas.clear();
+        mirrors.clear();
+        queries.clear();
+        clonePlan = null;
+        immutable = null;
+    }
+
+    /**
+     * Get the cached accessor for the given member declared by this class, or create it.
+     *
+     * @param factory Should not capture anything so calling this does not allocate.
+     */
+    <M extends Member, A> A handle(M member, Function<M, A> factory) {
+        return cached(handles, member, factory);
+    }
+
+    /**
+     * Like #handle, for the final field writers.
+     */
+    <A> A finalWriter(Field field, Function<Field, A> factory) {
+        return cached(finalWriters, field, factory);
+    }
+
+    UseCounter useCounter(Member member) {
+        return cached(useCounters, member, m -> new UseCounter());
+    }
+
+    MethodHandle lambdaFactory(Lambdas.Key key, Function<Lambdas.Key, MethodHandle> factory) {
+        return cached(lambdas, key, factory);
+    }
+
+    MirrorPlan mirrorPlan(MirrorPlan.Key key, Function<MirrorPlan.Key, MirrorPlan> factory) {
+        return cached(mirrors, key, factory);
+    }
+
+    /**
+     * Drop cached values of this class that refer to classes defined by the given loader, such as a factory for a
+     * functional interface, the plan of a mirror interface or a query with a predicate of that loader. Those are not
+     * dropped with the classes of the loader themselves when cached on a class of a loader it delegates to.
+     *
+     * @return The weight that was dropped.
+     */
+    long clearReferencesTo(ClassLoader loader) {
+        long removed = 0;
+        for (Lambdas.Key key : lambdas.keySet()) {
+            if ((key.functionalInterface.getClassLoader() == loader ||
+                 key.target.getDeclaringClass().getClassLoader() == loader) && lambdas.remove(key) != null) {
+                removed++;
+            }
+        }
+        for (MirrorPlan.Key key : mirrors.keySet()) {
+            // the plan holds the mirror class generated in the loader of the interface
+            if ((key.mirror.getClassLoader() == loader || key.type.getClassLoader() == loader) &&
+                mirrors.remove(key) != null) {
+                removed++;
+            }
+        }
+        for (Map.Entry<MemberQuery.Key, Member[]> entry : queries.entrySet()) {
+            MemberQuery<?> query = entry.getKey().get();
+            if ((query == null || query.refersTo(loader)) && queries.remove(entry.getKey(), entry.getValue())) {
+                removed += 1 + entry.getValue().length;
+            }
+        }
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, A> A cached(ConcurrentMap<? super K, Object> handles, K member, Function<K, A> factory) {
+        Object handle = handles.get(member);
+        if (handle == null) {
+            Object created = factory.apply(member);
+            handle = handles.putIfAbsent(member, created);
+            if (handle == null) {
+                handle = created;
+                Cache.admit(this, 1);
+            }
+        } else {
+            touch();
+        }
+        return (A) handle;
+    }
+
+    /**
+     * The members of this class matching the given query. Shared, must not be modified.
+     */
+    Member[] query(MemberQuery<?> query) {
+        MemberQuery.Key key = query.key();
+        Member[] result = queries.get(key);
+        if (result == null) {
+            Member[] computed = query.compute(type);
+            result = queries.putIfAbsent(key, computed);
+            if (result == null) {
+                result = computed;
+                Cache.admit(this, 1 + computed.length);
+            }
+        } else {
+            touch();
+        }
+        return result;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the fields of this class have no offsets.
+     */
+    ClonePlan clonePlan() {
+        ClonePlan plan = clonePlan;
+        if (plan != null) {
+            touch();
+            return plan;
+        }
+        // computed once like the member slots, so the plan is admitted exactly once
+        synchronized (this) {
+            plan = clonePlan;
+            if (plan != null) { return plan; }
+            plan = new ClonePlan(type);
+            clonePlan = plan;
+        }
+        // outside the lock, see Slot#get
+        Cache.admit(this, 1);
+        return plan;
+    }
+
+    /**
+     * Find the first field with the given name (or the first field at all if name is null) in the order of #fields,
+     * resolving the hierarchy one class at a time and stopping as soon as a match is found.
+     */
+    Field firstField(String name) {
+        return firstField(name, null);
+    }
+
+    /**
+     * Like #firstField(String), additionally skipping fields not accepted by the given filter (if not null).
+     */
+    Field firstField(String name, Predicate<Member> filter) {
+        return first(name, filter, info -> info.fields, ClassInfo::declaredFields);
+    }
+
+    /**
+     * @see #firstField(String)
+     */
+    Method firstMethod(String name) {
+        // the first method with a given name is never removed as an override, so we can ignore overrides here. This
+        // is not true with a filter, which might skip the override but accept the overridden method.
+        return first(name, null, info -> info.methods, ClassInfo::declaredMethods);
+    }
+
+    private <M extends Member> M first(String name, Predicate<Member> filter,
+                                       Function<ClassInfo, Slot<MemberTable<M>>> table,
+                                       Function<ClassInfo, M[]> declared) {
+        MemberTable<M> resolved = table.apply(this).getIfPresent();
+        if (resolved != null) {
+            // whole hierarchy is known already, just use that
+            Member[] candidates = name == null ? resolved.members : resolved.byName(name);
+            for (Member candidate : candidates) {
+                if (filter == null || filter.test(candidate)) {
+                    @SuppressWarnings("unchecked")
+                    M found = (M) candidate;
+                    return found;
+                }
+            }
+            return null;
+        }
+        for (M member : declared.apply(this)) {
+            if ((name == null || member.getName().equals(name)) && (filter == null || filter.test(member))) {
+                return member;
+            }
+        }
+        // same order as Cache.collectFields / collectMethods
+        Class<?> superclass = type.getSuperclass();
+        if (superclass != null) {
+            M found = Cache.info(superclass).first(name, filter, table, declared);
+            if (found != null) { return found; }
+        }
+        for (Class<?> iface : type.getInterfaces()) {
+            M found = Cache.info(iface).first(name, filter, table, declared);
+            if (found != null) { return found; }
+        }
+        return null;
+    }
+
+    private static final class Slot<V> {
+        /**
+         * Member kind for statistics.
+         */
+        private final int kind;
+        private volatile V value;
+        /**
+         * Weight of #value, only meaningful while it is set.
+         */
+        private int weight;
+
+        Slot(int kind) {
+            this.kind = kind;
+        }
+
+        V getIfPresent() {
+            return value;
+        }
+
+        /**
+         * @param compute Should not capture anything so calling this does not allocate.
+         */
+        V get(ClassInfo owner, Function<ClassInfo, V> compute) {
+            V value = this.value;
+            if (value != null) {
+                owner.touch();
+                Cache.statistics.hits[kind].increment();
+                return value;
+            }
+            int added;
+            synchronized (owner) {
+                value = this.value;
+                if (value != null) {
+                    Cache.statistics.hits[kind].increment();
+                    return value;
+                }
+                Object event = CacheEvents.instance.beginBuild();
+                long start = System.nanoTime();
+                value = compute.apply(owner);
+                Cache.statistics.buildTimeNanos.add(System.nanoTime() - start);
+                Cache.statistics.misses[kind].increment();
+                added = weight = value instanceof MemberTable ?
+                        ((MemberTable<?>) value).members.length :
+                        ((Object[]) value).length;
+                this.value = value;
+                CacheEvents.instance.endBuild(event, owner.type, kind, added);
+            }
+            // outside the lock so readers of this class don't wait for a possible eviction run
+            Cache.admit(owner, added);
+            return value;
+        }
+
+        int weight() {
+            return value == null ? 0 : weight;
+        }
+
+        void clear(boolean evicted) {
+            if (value != null) {
+                value = null;
+                if (evicted) {
+                    Cache.statistics.evictions[kind].increment();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import sun.misc.Unsafe;
+
+/**
+ * Field layout of a (non-array) class for copying instances with Unsafe: the offsets of all instance reference fields,
+ * and the primitive fields merged into contiguous regions. Computed once per class, see ClassInfo#clonePlan.
+ *
+ * @author yawkat
+ */
+final class ClonePlan {
+    private static final Unsafe unsafe = Unsafes.getUnsafe();
+
+    /**
+     * Offsets of all instance fields holding references, including inherited ones.
+     */
+    final long[] referenceOffsets;
+    /**
+     * Start offsets and lengths (alternating) of regions that only hold primitive fields.
+     */
+    private final long[] primitiveRegions;
+
+    /**
+     * @throws UnsupportedOperationException if a field has no offset (record or hidden class fields on newer JVMs).
+     */
+    ClonePlan(Class<?> type) {
+        List<Long> references = new ArrayList<>();
+        List<long[]> primitives = new ArrayList<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) { continue; }
+                long offset = unsafe.objectFieldOffset(field);
+                Class<?> fieldType = field.getType();
+                if (fieldType.isPrimitive()) {
+                    primitives.add(new long[]{ offset, size(fieldType) });
+                } else {
+                    references.add(offset);
+                }
+            }
+        }
+
+        referenceOffsets = new long[references.size()];
+        for (int i = 0; i < referenceOffsets.length; i++) {
+            referenceOffsets[i] = references.get(i);
+        }
+
+        // merge adjacent primitive fields so they can be copied in larger chunks
+        primitives.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] regions = new long[primitives.size() * 2];
+        int regionCount = 0;
+        for (long[] field : primitives) {
+            if (regionCount > 0 &&
+                regions[regionCount * 2 - 2] + regions[regionCount * 2 - 1] == field[0]) {
+                regions[regionCount * 2 - 1] += field[1];
+            } else {
+                regions[regionCount * 2] = field[0];
+                regions[regionCount * 2 + 1] = field[1];
+                regionCount++;
+            }
+        }
+        primitiveRegions = Arrays.copyOf(regions, regionCount * 2);
+    }
+
+    private static long size(Class<?> primitive) {
+        if (primitive == long.class || primitive == double.class) { return 8; }
+        if (primitive == int.class || primitive == float.class) { return 4; }
+        if (primitive == short.class || primitive == char.class) { return 2; }
+        return 1;
+    }
+
+    /**
+     * Copy all primitive fields. Both objects must be instances of the class of this plan.
+     */
+    void copyPrimitives(Object from, Object to) {
+        long[] regions = primitiveRegions;
+        for (int i = 0; i < regions.length; i += 2) {
+            long offset = regions[i];
+            long end = offset + regions[i + 1];
+            // only use aligned accesses, some platforms don't support unaligned ones
+            while (offset < end) {
+                long remaining = end - offset;
+                if (remaining >= 8 && (offset & 7) == 0) {
+                    unsafe.putLong(to, offset, unsafe.getLong(from, offset));
+                    offset += 8;
+                } else if (remaining >= 4 && (offset & 3) == 0) {
+                    unsafe.putInt(to, offset, unsafe.getInt(from, offset));
+                    offset += 4;
+                } else if (remaining >= 2 && (offset & 1) == 0) {
+                    unsafe.putShort(to, offset, unsafe.getShort(from, offset));
+                    offset += 2;
+                } else {
+                    unsafe.putByte(to, offset, unsafe.getByte(from, offset));
+                    offset++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy all fields. Both objects must be instances of the class of this plan.
+     */
+    void copy(Object from, Object to) {
+        copyPrimitives(from, to);
+        for (long offset : referenceOffsets) {
+            unsafe.putObject(to, offset, unsafe.getObject(from, offset));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+/**
+ * Custom cloning of one exact class for a {@link Cloner}, registered with {@link
+ * UnsafeClonerBuilder#strategy(Class, CloneStrategy)}. Used instead of copying the fields of instances, for example to
+ * rebuild a collection from its elements instead of copying its internal table.
+ *
+ * Cloning happens in two steps so cyclic references to the object can be resolved: first an empty copy is created,
+ * then it is filled. Deep clones fill objects from an explicit stack, so strategies that use Context#reference and
+ * Context#whenComplete can copy arbitrarily deep structures.
+ *
+ * @author yawkat
+ */
+public interface CloneStrategy<T> {
+    /**
+     * Create an empty copy of the given object.
+     */
+    T newInstance(T original);
+
+    /**
+     * Fill the copy returned by {@link #newInstance(Object)} with the contents of the original, passing every
+     * referenced object through the context. For shallow clones, the context returns its argument.
+     */
+    void copy(T original, T copy, Context context);
+
+    interface Context {
+        /**
+         * Get the clone of the given object. The clone is complete (so it can be used as a hash key) unless it is part
+         * of a cycle that is still being copied. This copies the object before returning, so long chains of strategies
+         * that use this recurse deeply; prefer #reference with #whenComplete.
+         */
+        <E> E clone(E object);
+
+        /**
+         * Get the clone of the given object, which may not be filled yet. Use this for references whose contents don't
+         * matter while copying, such as list elements or map values.
+         */
+        default <E> E reference(E object) {
+            return clone(object);
+        }
+
+        /**
+         * Run the given action once everything reachable from the object being copied is complete, for example to
+         * insert the clones returned by #reference into a hashed or sorted collection. Clones that are part of a cycle
+         * still being copied may not be complete yet.
+         */
+        default void whenComplete(Runnable action) {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Clone strategies for common collections that rebuild them from their cloned elements, see
+ * UnsafeClonerBuilder#defaults. Comparators of sorted collections are shared, not cloned.
+ *
+ * Elements are copied with Context#reference, so nesting depth is not limited by the call stack. Sets and maps only
+ * insert their elements (keys) with Context#whenComplete, once those are complete and their hash codes or ordering are
+ * final.
+ *
+ * Only classes without hidden state that would be lost are supported (LinkedHashMap is missing because its access
+ * order flag is not exposed).
+ *
+ * @author yawkat
+ */
+final class CollectionCloneStrategies {
+    private CollectionCloneStrategies() {}
+
+    static void register(UnsafeClonerBuilder builder) {
+        collection(builder, ArrayList.class, false, c -> new ArrayList<>(c.size()));
+        collection(builder, LinkedList.class, false, c -> new LinkedList<>());
+        collection(builder, ArrayDeque.class, false, c -> new ArrayDeque<>(c.size()));
+        collection(builder, HashSet.class, true, c -> new HashSet<>(capacity(c.size())));
+        collection(builder, LinkedHashSet.class, true, c -> new LinkedHashSet<>(capacity(c.size())));
+        collection(builder, TreeSet.class, true, c -> new TreeSet<>(((TreeSet<Object>) c).comparator()));
+        collection(builder, CopyOnWriteArrayList.class, false, c -> new CopyOnWriteArrayList<>());
+        collection(builder, ConcurrentLinkedQueue.class, false, c -> new ConcurrentLinkedQueue<>());
+        collection(builder, ConcurrentLinkedDeque.class, false, c -> new ConcurrentLinkedDeque<>());
+        collection(builder, ConcurrentSkipListSet.class, true,
+                   c -> new ConcurrentSkipListSet<>(((ConcurrentSkipListSet<Object>) c).comparator()));
+
+        map(builder, HashMap.class, m -> new HashMap<>(capacity(m.size())));
+        map(builder, TreeMap.class, m -> new TreeMap<>(((TreeMap<Object, Object>) m).comparator()));
+        map(builder, ConcurrentHashMap.class, m -> new ConcurrentHashMap<>(capacity(m.size())));
+        map(builder, ConcurrentSkipListMap.class,
+            m -> new ConcurrentSkipListMap<>(((ConcurrentSkipListMap<Object, Object>) m).comparator()));
+    }
+
+    /**
+     * Initial capacity of a hash table with the default load factor that fits the given number of entries.
+     */
+    private static int capacity(int size) {
+        return (int) (size / 0.75F) + 1;
+    }
+
+    /**
+     * @param keyed Whether the collection depends on the state of its elements (hashed or sorted), so they can only
+     *              be added once complete.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void collection(UnsafeClonerBuilder builder, Class<? extends Collection> type, boolean keyed,
+                                   Function<Collection<Object>, Collection<Object>> factory) {
+        builder.strategy((Class<Collection<Object>>) type, new CloneStrategy<Collection<Object>>() {
+            @Override
+            public Collection<Object> newInstance(Collection<Object> original) {
+                return factory.apply(original);
+            }
+
+            @Override
+            public void copy(Collection<Object> original, Collection<Object> copy, Context context) {
+                Object[] elements = original.toArray();
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = context.reference(elements[i]);
+                }
+                // adding them all at once also copies the backing array of CopyOnWriteArrayList only once
+                if (keyed) {
+                    context.whenComplete(() -> copy.addAll(Arrays.asList(elements)));
+                } else {
+                    copy.addAll(Arrays.asList(elements));
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void map(UnsafeClonerBuilder builder, Class<? extends Map> type,
+                            Function<Map<Object, Object>, Map<Object, Object>> factory) {
+        builder.strategy((Class<Map<Object, Object>>) type, new CloneStrategy<Map<Object, Object>>() {
+            @Override
+            public Map<Object, Object> newInstance(Map<Object, Object> original) {
+                return factory.apply(original);
+            }
+
+            @Override
+            public void copy(Map<Object, Object> original, Map<Object, Object> copy, Context context) {
+                // keys and values alternating, the map may change concurrently so don't trust its size
+                List<Object> entries = new ArrayList<>(original.size() * 2);
+                for (Map.Entry<Object, Object> entry : original.entrySet()) {
+                    entries.add(context.reference(entry.getKey()));
+                    entries.add(context.reference(entry.getValue()));
+                }
+                context.whenComplete(() -> {
+                    for (int i = 0; i < entries.size(); i += 2) {
+                        copy.put(entries.get(i), entries.get(i + 1));
+                    }
+                });
+            }
+        });
+    }
+}
@@ -8,6 +8,7 @@ package at.yawk.reflect;
 
 import java.lang.reflect.Constructor;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * @author yawkat
@@ -17,6 +18,13 @@ public interface Constructors<T> extends Members<T> {
         return new ConstructorsImpl<>(clazz);
     }
 
+    /**
+     * Select the constructors of the given class matching the given query, see {@link MemberQuery}.
+     */
+    public static <T> Constructors<T> of(Class<T> clazz, MemberQuery<Constructor<?>> query) {
+        return new ConstructorsImpl<T>(clazz).query(query);
+    }
+
     /**
      * Remove methods without the given modifier or without all of the given modifiers.
      */
@@ -51,12 +59,23 @@ public interface Constructors<T> extends Members<T> {
      */
     Constructors<T> all();
 
+    /**
+     * mode(SelectionMode.BEST)
+     */
+    Constructors<T> best();
+
     /**
      * mode(SelectionMode.ONLY)
      */
     @Override
     Constructors<T> only();
 
+    /**
+     * Choose how the selected members are accessed. Defaults to AccessBackend.ADAPTIVE.
+     */
+    @Override
+    Constructors<T> backend(AccessBackend backend);
+
     /**
      * Make this object immutable. Subsequent calls will yield a copy of this object and will not modify this object.
      */
@@ -73,6 +92,23 @@ public interface Constructors<T> extends Members<T> {
      */
     T invoke(Object... args) throws UncheckedReflectiveOperationException;
 
+    /*
+     * Fixed-arity variants of #invoke that don't need an argument array. These always use method handles like
+     * AccessBackend.METHOD_HANDLES, core reflection would need the array anyway.
+     */
+
+    T invoke0() throws UncheckedReflectiveOperationException;
+
+    T invoke1(Object a) throws UncheckedReflectiveOperationException;
+
+    T invoke2(Object a, Object b) throws UncheckedReflectiveOperationException;
+
+    T invoke3(Object a, Object b, Object c) throws UncheckedReflectiveOperationException;
+
+    T invoke4(Object a, Object b, Object c, Object d) throws UncheckedReflectiveOperationException;
+
+    T invoke5(Object a, Object b, Object c, Object d, Object e) throws UncheckedReflectiveOperationException;
+
     default <NewT> Methods<?, NewT> methods(Object... args) {
         return Methods.of(invoke(args));
     }
@@ -81,5 +117,24 @@ public interface Constructors<T> extends Members<T> {
         return Fields.of(invoke(args));
     }
 
+    /**
+     * Implement the given functional interface with the selected constructor, so it can be called without any
+     * reflection overhead.
+     *
+     * The implementing class is generated on the first call for an interface and constructor and kept in the member
+     * cache, so later calls only create an instance. Eviction, and {@link MemberCache#invalidate(ClassLoader)} for the
+     * loader of the interface or of the constructor's class, drop the cached factory; the next call generates the
+     * class again.
+     */
+    <F> F asFactory(Class<F> functionalInterface) throws UncheckedReflectiveOperationException;
+
+    /**
+     * Shorthand for {@link #asFactory(Class)} with a Supplier, for the no-argument constructor.
+     */
+    @SuppressWarnings("unchecked")
+    default Supplier<T> asSupplier() throws UncheckedReflectiveOperationException {
+        return asFactory(Supplier.class);
+    }
+
     Constructor<T> handle();
 }
@@ -8,7 +8,7 @@ package at.yawk.reflect;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Member;
-import java.util.NoSuchElementException;
+import java.util.Objects;
 
 /**
  * @author yawkat
@@ -16,7 +16,7 @@ import java.util.NoSuchElementException;
 class ConstructorsImpl<T> extends MembersImpl<T, Constructor<T>, ConstructorsImpl<T>>
         implements Constructors<T> {
     public ConstructorsImpl(Class<?> declaring) {
-        super(Cache.getConstructors(declaring));
+        super(Cache.info(declaring));
     }
 
     ConstructorsImpl() {}
@@ -26,6 +26,11 @@ class ConstructorsImpl<T> extends MembersImpl<T, Constructor<T>, ConstructorsImp
         return new ConstructorsImpl<>();
     }
 
+    @Override
+    MemberTable<?> table(ClassInfo info) {
+        return info.constructors();
+    }
+
     @Override
     public ConstructorsImpl<T> all() {
         return mode(SelectionMode.ALL);
@@ -35,6 +40,7 @@ class ConstructorsImpl<T> extends MembersImpl<T, Constructor<T>, ConstructorsImp
     @Override
     public void eachConstructor(ReflectiveConsumer<Constructor<T>> consumer)
             throws UncheckedReflectiveOperationException {
+        resolve();
         for (int i = 0; i < matchingLength; i++) {
             try {
                 consumer.consume((Constructor<T>) matching[i]);
@@ -49,25 +55,86 @@ class ConstructorsImpl<T> extends MembersImpl<T, Constructor<T>, ConstructorsImp
     public T invoke(Object... args) {
         switch (selectionMode) {
         case ALL:
+            resolve();
             T returnValue = null;
             for (int i = 0; i < matchingLength; i++) {
                 returnValue = newInstance((Constructor<T>) matching[i], args);
             }
             return returnValue;
         case ONLY:
-            if (matchingLength > 1) {
-                throw new IllegalStateException("Too many constructors found: " + this);
+        case FIRST:
+            return newInstance(single("Constructor"), args);
+        case BEST:
+            return newInstance(best("Constructor", args), args);
+        default:
+            throw new UnsupportedOperationException("Unsupported selection mode " + selectionMode);
+        }
+    }
+
+    @Override
+    public T invoke0() {
+        return invokeFixed(0, null, null, null, null, null);
+    }
+
+    @Override
+    public T invoke1(Object a) {
+        return invokeFixed(1, a, null, null, null, null);
+    }
+
+    @Override
+    public T invoke2(Object a, Object b) {
+        return invokeFixed(2, a, b, null, null, null);
+    }
+
+    @Override
+    public T invoke3(Object a, Object b, Object c) {
+        return invokeFixed(3, a, b, c, null, null);
+    }
+
+    @Override
+    public T invoke4(Object a, Object b, Object c, Object d) {
+        return invokeFixed(4, a, b, c, d, null);
+    }
+
+    @Override
+    public T invoke5(Object a, Object b, Object c, Object d, Object e) {
+        return invokeFixed(5, a, b, c, d, e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T invokeFixed(int arity, Object a, Object b, Object c, Object d, Object e) {
+        switch (selectionMode) {
+        case ALL:
+            resolve();
+            T returnValue = null;
+            for (int i = 0; i < matchingLength; i++) {
+                returnValue = (T) Cache.constructorHandle((Constructor<?>) matching[i])
+                        .invoke(arity, null, a, b, c, d, e);
             }
-            // same behaviour as first apart from this
+            return returnValue;
+        case ONLY:
         case FIRST:
-            if (matchingLength < 1) { throw new NoSuchElementException("Constructor not found"); }
-            return newInstance((Constructor<T>) matching[0], args);
+            return (T) Cache.constructorHandle(single("Constructor")).invoke(arity, null, a, b, c, d, e);
+        case BEST:
+            return (T) Cache.constructorHandle(best("Constructor", arity, a, b, c, d, e))
+                    .invoke(arity, null, a, b, c, d, e);
         default:
             throw new UnsupportedOperationException("Unsupported selection mode " + selectionMode);
         }
     }
 
+    @Override
+    public <F> F asFactory(Class<F> functionalInterface) {
+        Objects.requireNonNull(functionalInterface, "functionalInterface");
+        return Lambdas.implement(functionalInterface, single("Constructor"), null);
+    }
+
+    @SuppressWarnings("unchecked")
     private T newInstance(Constructor<T> constructor, Object[] args) {
+        Invoker invoker = (Invoker) handles(constructor);
+        if (invoker != null) {
+            return (T) invoker.invoke(null, args);
+        }
         try {
             return constructor.newInstance(args);
         } catch (ReflectiveOperationException e) {
@@ -96,6 +96,11 @@ public abstract class Delegate<T, M extends Members<T>> implements Members<T> {
         return wrap((M) handle.on(on));
     }
 
+    @Override
+    public M backend(AccessBackend backend) {
+        return wrap((M) handle.backend(backend));
+    }
+
     final <NewT> Fields<?, NewT> wrapFields(Object o) {
         Fields<?, NewT> w;
         if (handle instanceof Delegate) {
@@ -59,6 +59,86 @@ public class DelegateFields<T, R> extends Delegate<T, Fields<T, R>> implements F
         handle.set(value);
     }
 
+    @Override
+    public boolean getBoolean() throws UncheckedReflectiveOperationException {
+        return handle.getBoolean();
+    }
+
+    @Override
+    public void setBoolean(boolean value) throws UncheckedReflectiveOperationException {
+        handle.setBoolean(value);
+    }
+
+    @Override
+    public byte getByte() throws UncheckedReflectiveOperationException {
+        return handle.getByte();
+    }
+
+    @Override
+    public void setByte(byte value) throws UncheckedReflectiveOperationException {
+        handle.setByte(value);
+    }
+
+    @Override
+    public char getChar() throws UncheckedReflectiveOperationException {
+        return handle.getChar();
+    }
+
+    @Override
+    public void setChar(char value) throws UncheckedReflectiveOperationException {
+        handle.setChar(value);
+    }
+
+    @Override
+    public short getShort() throws UncheckedReflectiveOperationException {
+        return handle.getShort();
+    }
+
+    @Override
+    public void setShort(short value) throws UncheckedReflectiveOperationException {
+        handle.setShort(value);
+    }
+
+    @Override
+    public int getInt() throws UncheckedReflectiveOperationException {
+        return handle.getInt();
+    }
+
+    @Override
+    public void setInt(int value) throws UncheckedReflectiveOperationException {
+        handle.setInt(value);
+    }
+
+    @Override
+    public long getLong() throws UncheckedReflectiveOperationException {
+        return handle.getLong();
+    }
+
+    @Override
+    public void setLong(long value) throws UncheckedReflectiveOperationException {
+        handle.setLong(value);
+    }
+
+    @Override
+    public float getFloat() throws UncheckedReflectiveOperationException {
+        return handle.getFloat();
+    }
+
+    @Override
+    public void setFloat(float value) throws UncheckedReflectiveOperationException {
+        handle.setFloat(value);
+    }
+
+    @Override
+    public double getDouble() throws UncheckedReflectiveOperationException {
+        return handle.getDouble();
+    }
+
+    @Override
+    public void setDouble(double value) throws UncheckedReflectiveOperationException {
+        handle.setDouble(value);
+    }
+
     @Override
     public <NewT> Methods<?, NewT> methods() {
         return wrapMethods(get());
@@ -74,6 +154,16 @@ public class DelegateFields<T, R> extends Delegate<T, Fields<T, R>> implements F
         handle.each(consumer);
     }
 
+    @Override
+    public FieldAccessor<T, R> compile() {
+        return handle.compile();
+    }
+
+    @Override
+    public FieldAccessor<T, R> compile(StoreOrdering ordering) {
+        return handle.compile(ordering);
+    }
+
     @Override
     public Field handle() {
         return handle.handle();
@@ -32,6 +32,11 @@ public class DelegateMethods<T, R> extends Delegate<T, Methods<T, R>> implements
         return wrap(handle.all());
     }
 
+    @Override
+    public Methods<T, R> best() {
+        return wrap(handle.best());
+    }
+
     @Override
     public void eachMethod(ReflectiveConsumer<Method> consumer) throws UncheckedReflectiveOperationException {
         handle.eachMethod(consumer);
@@ -42,6 +47,39 @@ public class DelegateMethods<T, R> extends Delegate<T, Methods<T, R>> implements
         return handle.invoke(args);
     }
 
+    @Override
+    public <Return extends R> Return invoke0() throws UncheckedReflectiveOperationException {
+        return handle.invoke0();
+    }
+
+    @Override
+    public <Return extends R> Return invoke1(Object a) throws UncheckedReflectiveOperationException {
+        return handle.invoke1(a);
+    }
+
+    @Override
+    public <Return extends R> Return invoke2(Object a, Object b) throws UncheckedReflectiveOperationException {
+        return handle.invoke2(a, b);
+    }
+
+    @Override
+    public <Return extends R> Return invoke3(Object a, Object b, Object c)
+            throws UncheckedReflectiveOperationException {
+        return handle.invoke3(a, b, c);
+    }
+
+    @Override
+    public <Return extends R> Return invoke4(Object a, Object b, Object c, Object d)
+            throws UncheckedReflectiveOperationException {
+        return handle.invoke4(a, b, c, d);
+    }
+
+    @Override
+    public <Return extends R> Return invoke5(Object a, Object b, Object c, Object d, Object e)
+            throws UncheckedReflectiveOperationException {
+        return handle.invoke5(a, b, c, d, e);
+    }
+
     @Override
     public <NewT> Methods<?, NewT> methods(Object... args) {
         return wrapMethods(invoke(args));
@@ -57,6 +95,11 @@ public class DelegateMethods<T, R> extends Delegate<T, Methods<T, R>> implements
         handle.each(consumer, args);
     }
 
+    @Override
+    public <F> F asFunction(Class<F> functionalInterface) throws UncheckedReflectiveOperationException {
+        return handle.asFunction(functionalInterface);
+    }
+
     @Override
     public Method handle() {
         return handle.handle();
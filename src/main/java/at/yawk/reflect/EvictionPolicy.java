@@ -0,0 +1,23 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+/**
+ * Order in which classes are evicted from the {@link MemberCache} once it exceeds its maximum weight.
+ *
+ * @author yawkat
+ */
+public enum EvictionPolicy {
+    /**
+     * Evict the classes that were used least recently first.
+     */
+    LRU,
+    /**
+     * Evict the classes that were used least frequently first.
+     */
+    LFU,
+}
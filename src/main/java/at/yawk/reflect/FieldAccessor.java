@@ -0,0 +1,66 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Field;
+
+/**
+ * A single field, resolved once through {@link Fields#compile()}, that can be read and written on any instance. Unlike
+ * a {@link Fields} selector, calls do no lookup or validation work beyond the access itself. Implementations are
+ * thread-safe.
+ *
+ * @author yawkat
+ */
+public interface FieldAccessor<T, R> {
+    /**
+     * Get the value of this field on the given instance (null for static fields).
+     */
+    R get(T on) throws UncheckedReflectiveOperationException;
+
+    /**
+     * Set the value of this field on the given instance (null for static fields).
+     */
+    void set(T on, R value) throws UncheckedReflectiveOperationException;
+
+    /*
+     * Primitive variants of get and set that don't box. Widening conversions are applied like in Field#getInt etc.
+     */
+
+    boolean getBoolean(T on) throws UncheckedReflectiveOperationException;
+
+    void setBoolean(T on, boolean value) throws UncheckedReflectiveOperationException;
+
+    byte getByte(T on) throws UncheckedReflectiveOperationException;
+
+    void setByte(T on, byte value) throws UncheckedReflectiveOperationException;
+
+    char getChar(T on) throws UncheckedReflectiveOperationException;
+
+    void setChar(T on, char value) throws UncheckedReflectiveOperationException;
+
+    short getShort(T on) throws UncheckedReflectiveOperationException;
+
+    void setShort(T on, short value) throws UncheckedReflectiveOperationException;
+
+    int getInt(T on) throws UncheckedReflectiveOperationException;
+
+    void setInt(T on, int value) throws UncheckedReflectiveOperationException;
+
+    long getLong(T on) throws UncheckedReflectiveOperationException;
+
+    void setLong(T on, long value) throws UncheckedReflectiveOperationException;
+
+    float getFloat(T on) throws UncheckedReflectiveOperationException;
+
+    void setFloat(T on, float value) throws UncheckedReflectiveOperationException;
+
+    double getDouble(T on) throws UncheckedReflectiveOperationException;
+
+    void setDouble(T on, double value) throws UncheckedReflectiveOperationException;
+
+    Field field();
+}
@@ -18,6 +18,13 @@ public interface Fields<T, R> extends Members<T> {
         return new FieldsImpl<>(clazz);
     }
 
+    /**
+     * Select the fields of the given class matching the given query, see {@link MemberQuery}.
+     */
+    public static <T, R> Fields<T, R> ofType(Class<T> clazz, MemberQuery<Field> query) {
+        return new FieldsImpl<T, R>(clazz).query(query);
+    }
+
     @SuppressWarnings("unchecked")
     public static <R> Fields<?, R> of(Object obj) {
         return Fields.<Object, R>ofType((Class) obj.getClass()).on(obj);
@@ -74,6 +81,12 @@ public interface Fields<T, R> extends Members<T> {
      */
     Fields<T, R> all();
 
+    /**
+     * Choose how the selected members are accessed. Defaults to AccessBackend.ADAPTIVE.
+     */
+    @Override
+    Fields<T, R> backend(AccessBackend backend);
+
     /**
      * Make this object immutable. Subsequent calls will yield a copy of this object and will not modify this object.
      */
@@ -110,6 +123,90 @@ public interface Fields<T, R> extends Members<T> {
 
     void set(R value) throws UncheckedReflectiveOperationException;
 
+    /*
+     * Primitive variants of get and set that don't box the value.
+     */
+
+    /**
+     * @see Field#getBoolean
+     */
+    boolean getBoolean() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setBoolean
+     */
+    void setBoolean(boolean value) throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#getByte
+     */
+    byte getByte() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setByte
+     */
+    void setByte(byte value) throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#getChar
+     */
+    char getChar() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setChar
+     */
+    void setChar(char value) throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#getShort
+     */
+    short getShort() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setShort
+     */
+    void setShort(short value) throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#getInt
+     */
+    int getInt() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setInt
+     */
+    void setInt(int value) throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#getLong
+     */
+    long getLong() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setLong
+     */
+    void setLong(long value) throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#getFloat
+     */
+    float getFloat() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setFloat
+     */
+    void setFloat(float value) throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#getDouble
+     */
+    double getDouble() throws UncheckedReflectiveOperationException;
+
+    /**
+     * @see Field#setDouble
+     */
+    void setDouble(double value) throws UncheckedReflectiveOperationException;
+
     default <NewT> Methods<?, NewT> methods() {
         return Methods.of((Object) get());
     }
@@ -123,5 +220,19 @@ public interface Fields<T, R> extends Members<T> {
      */
     void each(Consumer<R> consumer);
 
+    /**
+     * Resolve the selected field once and return an accessor for it that works on any instance. The handle of this
+     * object is ignored.
+     */
+    FieldAccessor<T, R> compile();
+
+    /**
+     * Like {@link #compile()}, but the accessor reads and writes through the field offset with the given memory
+     * ordering. This also works for final and static final fields and is safe to use from several threads.
+     *
+     * @throws UnsupportedOperationException if Unsafe is not available or the field has no offset.
+     */
+    FieldAccessor<T, R> compile(StoreOrdering ordering);
+
     Field handle();
 }
@@ -7,17 +7,17 @@
 package at.yawk.reflect;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
-import java.util.NoSuchElementException;
+import java.lang.reflect.Member;
+import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * @author yawkat
  */
 class FieldsImpl<T, R> extends MembersImpl<T, Field, FieldsImpl<T, R>> implements Fields<T, R> {
     FieldsImpl(Class<?> declaring) {
-        super(Cache.getFields(declaring));
+        super(Cache.info(declaring));
     }
 
     FieldsImpl() {}
@@ -27,10 +27,20 @@ class FieldsImpl<T, R> extends MembersImpl<T, Field, FieldsImpl<T, R>> implement
         return new FieldsImpl<>();
     }
 
+    @Override
+    MemberTable<?> table(ClassInfo info) {
+        return info.fields();
+    }
+
+    @Override
+    Member lazyFirst(ClassInfo info, String name, Predicate<Member> filter) {
+        return info.firstField(name, filter);
+    }
+
     @Override
     public FieldsImpl<T, R> mode(SelectionMode selectionMode) {
-        if (selectionMode == SelectionMode.ALL) {
-            throw new UnsupportedOperationException("Cannot use SelectionMode.ALL on fields");
+        if (selectionMode == SelectionMode.ALL || selectionMode == SelectionMode.BEST) {
+            throw new UnsupportedOperationException("Cannot use SelectionMode." + selectionMode + " on fields");
         }
         return super.mode(selectionMode);
     }
@@ -53,6 +63,7 @@ class FieldsImpl<T, R> extends MembersImpl<T, Field, FieldsImpl<T, R>> implement
 
     @Override
     public void eachField(ReflectiveConsumer<Field> consumer) throws UncheckedReflectiveOperationException {
+        resolve();
         for (int i = 0; i < matchingLength; i++) {
             try {
                 consumer.consume((Field) matching[i]);
@@ -72,15 +83,11 @@ class FieldsImpl<T, R> extends MembersImpl<T, Field, FieldsImpl<T, R>> implement
     public void set(R value) throws UncheckedReflectiveOperationException {
         switch (selectionMode) {
         case ONLY:
-            if (matchingLength > 1) {
-                throw new IllegalStateException("Too many fields found: " + Arrays.toString(matching));
-            }
-            // same behaviour as first apart from this
         case FIRST:
-            if (matchingLength < 1) { throw new NoSuchElementException("Field not found"); }
-            doSet((Field) matching[0], handle, value);
+            doSet(single("Field"), handle, value);
             break;
         case ALL:
+            resolve();
             for (int i = 0; i < matchingLength; i++) {
                 doSet((Field) matching[i], handle, value);
             }
@@ -90,57 +97,126 @@ class FieldsImpl<T, R> extends MembersImpl<T, Field, FieldsImpl<T, R>> implement
         }
     }
 
+    @Override
+    public boolean getBoolean() {
+        return accessor(single("Field")).getBoolean(handle);
+    }
+
+    @Override
+    public void setBoolean(boolean value) {
+        accessor(single("Field")).setBoolean(handle, value);
+    }
+
+    @Override
+    public byte getByte() {
+        return accessor(single("Field")).getByte(handle);
+    }
+
+    @Override
+    public void setByte(byte value) {
+        accessor(single("Field")).setByte(handle, value);
+    }
+
+    @Override
+    public char getChar() {
+        return accessor(single("Field")).getChar(handle);
+    }
+
+    @Override
+    public void setChar(char value) {
+        accessor(single("Field")).setChar(handle, value);
+    }
+
+    @Override
+    public short getShort() {
+        return accessor(single("Field")).getShort(handle);
+    }
+
+    @Override
+    public void setShort(short value) {
+        accessor(single("Field")).setShort(handle, value);
+    }
+
+    @Override
+    public int getInt() {
+        return accessor(single("Field")).getInt(handle);
+    }
+
+    @Override
+    public void setInt(int value) {
+        accessor(single("Field")).setInt(handle, value);
+    }
+
+    @Override
+    public long getLong() {
+        return accessor(single("Field")).getLong(handle);
+    }
+
+    @Override
+    public void setLong(long value) {
+        accessor(single("Field")).setLong(handle, value);
+    }
+
+    @Override
+    public float getFloat() {
+        return accessor(single("Field")).getFloat(handle);
+    }
+
+    @Override
+    public void setFloat(float value) {
+        accessor(single("Field")).setFloat(handle, value);
+    }
+
+    @Override
+    public double getDouble() {
+        return accessor(single("Field")).getDouble(handle);
+    }
+
+    @Override
+    public void setDouble(double value) {
+        accessor(single("Field")).setDouble(handle, value);
+    }
+
     @Override
     public void each(Consumer<R> consumer) {
+        resolve();
         for (int i = 0; i < matchingLength; i++) {
             R value = doGet((Field) matching[i], handle);
             consumer.accept(value);
         }
     }
 
+    @Override
+    public FieldAccessor<T, R> compile() {
+        Field field = single("Field");
+        return backend == AccessBackend.REFLECTION ? new ReflectiveFieldAccessor<>(field) : Cache.fieldHandle(field);
+    }
+
+    @Override
+    public FieldAccessor<T, R> compile(StoreOrdering ordering) {
+        Objects.requireNonNull(ordering, "ordering");
+        return new UnsafeFieldAccessor<>(single("Field"), ordering);
+    }
+
+    /**
+     * The accessor for the given field with the current backend: its method handle accessor (see #handles), or core
+     * reflection.
+     */
+    @SuppressWarnings("unchecked")
+    private FieldAccessor<T, R> accessor(Field field) {
+        FieldAccessor<T, R> handle = (FieldAccessor<T, R>) handles(field);
+        return handle != null ? handle : new ReflectiveFieldAccessor<>(field);
+    }
+
     private void doSet(Field field, T on, R value) {
-        int modifiers = field.getModifiers();
-        boolean isFinal = Modifier.isFinal(modifiers);
-        if (isFinal) {
-            try {
-                Cache.modifiersField.setInt(field, modifiers & ~Modifier.FINAL);
-            } catch (IllegalAccessException e) {
-                throw new UncheckedReflectiveOperationException(e);
-            }
-        }
-        try {
-            field.set(on, value);
-        } catch (IllegalAccessException e) {
-            throw new UncheckedReflectiveOperationException(e);
-        }
-        if (isFinal) {
-            try {
-                Cache.modifiersField.setInt(field, modifiers);
-            } catch (IllegalAccessException ignored) {}
-        }
+        accessor(field).set(on, value);
     }
 
     private R get(T instance) {
-        switch (selectionMode) {
-        case ONLY:
-            if (matchingLength > 1) {
-                throw new IllegalStateException("Too many fields found: " + this);
-            }
-            // same behaviour as first apart from this
-        case FIRST:
-            if (matchingLength < 1) { throw new NoSuchElementException("Field not found"); }
-            return doGet((Field) matching[0], instance);
-        default:
-            throw new UnsupportedOperationException("Unsupported selection mode " + selectionMode);
-        }
+        return doGet(single("Field"), instance);
     }
 
-    @SuppressWarnings("unchecked")
     private R doGet(Field field, T on) {
-        try {
-            return (R) field.get(on);
-        } catch (IllegalAccessException e) {
-            throw new UncheckedReflectiveOperationException(e);
-        }
+        return accessor(field).get(on);
     }
 }
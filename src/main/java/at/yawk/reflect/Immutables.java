@@ -0,0 +1,97 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Detection of deeply immutable classes, whose instances can be shared instead of cloned, see
+ * UnsafeClonerBuilder#detectImmutables. The verdict is cached in the ClassInfo of each class.
+ *
+ * A class is immutable if it is an enum, one of a list of JDK value types, or if it has instance fields (including
+ * inherited ones) and all of them are final and of a primitive type or of a final (or enum) immutable type. Classes
+ * without instance fields, Object in particular, are not immutable: their instances are usually used for their
+ * identity, as locks or sentinels, and sharing them would change the behavior of the clone.
+ *
+ * @author yawkat
+ */
+final class Immutables {
+    /**
+     * JDK value types, most of which cache derived values in non-final fields.
+     */
+    private static final Set<Class<?>> KNOWN = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Byte.class, Short.class, Character.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, Locale.class,
+            Currency.class, Instant.class, Duration.class, Period.class, LocalDate.class, LocalTime.class,
+            LocalDateTime.class, OffsetTime.class, OffsetDateTime.class, ZonedDateTime.class, Year.class,
+            YearMonth.class, MonthDay.class, ZoneOffset.class
+    ));
+
+    private Immutables() {}
+
+    static boolean isImmutable(Class<?> type) {
+        Boolean cached = Cache.info(type).immutable;
+        if (cached != null) { return cached; }
+        List<Class<?>> verified = new ArrayList<>();
+        boolean immutable = analyze(type, new HashSet<>(), verified);
+        if (immutable) {
+            // all the classes this depends on were only correct if the root is immutable, which it is
+            for (Class<?> dependency : verified) {
+                Cache.info(dependency).immutable = true;
+            }
+        }
+        Cache.info(type).immutable = immutable;
+        return immutable;
+    }
+
+    /**
+     * @param visiting Classes currently being analyzed, assumed to be immutable to resolve cycles.
+     * @param verified Classes found to be immutable that may depend on such an assumption.
+     */
+    private static boolean analyze(Class<?> type, Set<Class<?>> visiting, List<Class<?>> verified) {
+        if (type.isPrimitive()) { return true; }
+        Boolean cached = Cache.info(type).immutable;
+        if (cached != null) { return cached; }
+        if (KNOWN.contains(type) || type.isEnum() ||
+            (type.getSuperclass() != null && type.getSuperclass().isEnum()) ||
+            // ZoneId subclasses are JDK internal
+            ZoneId.class.isAssignableFrom(type)) {
+            return true;
+        }
+        if (type.isArray() || type.isInterface()) { return false; }
+        if (!visiting.add(type)) { return true; }
+
+        boolean hasFields = false;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers)) { continue; }
+                hasFields = true;
+                Class<?> fieldType = field.getType();
+                if (!Modifier.isFinal(modifiers) ||
+                    !(fieldType.isPrimitive() || fieldType.isEnum() ||
+                      Modifier.isFinal(fieldType.getModifiers())) ||
+                    !analyze(fieldType, visiting, verified)) {
+                    // a definite answer, cache it right away
+                    Cache.info(type).immutable = false;
+                    return false;
+                }
+            }
+        }
+        if (!hasFields) {
+            Cache.info(type).immutable = false;
+            return false;
+        }
+        verified.add(type);
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Member;
+
+/**
+ * Small polymorphic inline cache from the classes of a list of arguments to the member chosen for them, so repeated
+ * calls with the same argument shapes skip overload resolution. When full, entries are replaced round-robin.
+ *
+ * Lookups don't allocate. Concurrent use is safe: entries are immutable and a lost update only causes another miss.
+ *
+ * @author yawkat
+ */
+final class InlineCache {
+    private static final int SIZE = 4;
+
+    private final Entry[] entries = new Entry[SIZE];
+    private int next;
+
+    /**
+     * @return The cached member or null.
+     */
+    Member get(Object[] args) {
+        for (Entry entry : entries) {
+            if (entry != null && entry.matches(args)) {
+                return entry.member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Like #get(Object[]) with the first #arity of the given arguments.
+     */
+    Member get(int arity, Object a, Object b, Object c, Object d, Object e) {
+        for (Entry entry : entries) {
+            if (entry != null && entry.matches(arity, a, b, c, d, e)) {
+                return entry.member;
+            }
+        }
+        return null;
+    }
+
+    void put(Object[] args, Member member) {
+        Class<?>[] key = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            key[i] = args[i] == null ? null : args[i].getClass();
+        }
+        entries[next++ & (SIZE - 1)] = new Entry(key, member);
+    }
+
+    private static final class Entry {
+        /**
+         * Argument classes, null for null arguments.
+         */
+        final Class<?>[] key;
+        final Member member;
+
+        Entry(Class<?>[] key, Member member) {
+            this.key = key;
+            this.member = member;
+        }
+
+        boolean matches(Object[] args) {
+            if (args.length != key.length) { return false; }
+            for (int i = 0; i < args.length; i++) {
+                if (!is(key[i], args[i])) { return false; }
+            }
+            return true;
+        }
+
+        boolean matches(int arity, Object a, Object b, Object c, Object d, Object e) {
+            if (arity != key.length) { return false; }
+            return (arity <= 0 || is(key[0], a)) &&
+                   (arity <= 1 || is(key[1], b)) &&
+                   (arity <= 2 || is(key[2], c)) &&
+                   (arity <= 3 || is(key[3], d)) &&
+                   (arity <= 4 || is(key[4], e));
+        }
+
+        private static boolean is(Class<?> type, Object arg) {
+            return arg == null ? type == null : arg.getClass() == type;
+        }
+    }
+}
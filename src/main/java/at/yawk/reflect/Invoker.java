@@ -0,0 +1,31 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.util.Arrays;
+
+/**
+ * Invocation of a single method or constructor, independent of how it is implemented.
+ *
+ * @author yawkat
+ */
+abstract class Invoker {
+    /**
+     * @param on   The receiver, ignored for static methods and constructors.
+     * @throws UncheckedReflectiveOperationException wrapping an InvocationTargetException if the target throws.
+     */
+    abstract Object invoke(Object on, Object[] args) throws UncheckedReflectiveOperationException;
+
+    /**
+     * Invoke with the first #arity of the given arguments, the remaining ones are ignored. Implementations should
+     * override this to avoid the argument array.
+     */
+    Object invoke(int arity, Object on, Object a, Object b, Object c, Object d, Object e)
+            throws UncheckedReflectiveOperationException {
+        return invoke(on, Arrays.copyOf(new Object[]{ a, b, c, d, e }, arity));
+    }
+}
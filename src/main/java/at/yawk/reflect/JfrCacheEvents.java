@@ -0,0 +1,86 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * @author yawkat
+ */
+final class JfrCacheEvents extends CacheEvents {
+    @Override
+    Object beginBuild() {
+        MemberTableBuild event = new MemberTableBuild();
+        if (!event.isEnabled()) { return null; }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endBuild(Object event, Class<?> type, int kind, int members) {
+        if (event == null) { return; }
+        MemberTableBuild build = (MemberTableBuild) event;
+        build.end();
+        if (build.shouldCommit()) {
+            build.type = type;
+            build.kind = CacheStatistics.KIND_NAMES[kind];
+            build.members = members;
+            build.commit();
+        }
+    }
+
+    @Override
+    Object beginEviction() {
+        MemberCacheEviction event = new MemberCacheEviction();
+        if (!event.isEnabled()) { return null; }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endEviction(Object event, int classes, long evictedWeight, long remainingWeight) {
+        if (event == null) { return; }
+        MemberCacheEviction eviction = (MemberCacheEviction) event;
+        eviction.end();
+        if (eviction.shouldCommit()) {
+            eviction.classes = classes;
+            eviction.evictedMembers = evictedWeight;
+            eviction.remainingMembers = remainingWeight;
+            eviction.commit();
+        }
+    }
+
+    @Name("at.yawk.reflect.MemberTableBuild")
+    @Label("Member Table Build")
+    @Description("Members of a class were resolved because they were not cached")
+    @Category("Reflect")
+    static final class MemberTableBuild extends Event {
+        @Label("Class")
+        Class<?> type;
+        @Label("Member Kind")
+        String kind;
+        @Label("Members")
+        int members;
+    }
+
+    @Name("at.yawk.reflect.MemberCacheEviction")
+    @Label("Member Cache Eviction")
+    @Description("Classes were evicted from the member cache because it exceeded its maximum weight")
+    @Category("Reflect")
+    static final class MemberCacheEviction extends Event {
+        @Label("Evicted Classes")
+        int classes;
+        @Label("Evicted Members")
+        long evictedMembers;
+        @Label("Remaining Members")
+        long remainingMembers;
+    }
+}
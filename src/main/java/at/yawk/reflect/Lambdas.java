@@ -0,0 +1,306 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementations of functional interfaces that call a member directly, see Methods#asFunction and
+ * Constructors#asFactory.
+ *
+ * LambdaMetafactory needs a lookup with private access to the member's class. On java 9+ that is
+ * MethodHandles#privateLookupIn, which only works if the member's package is open to this library; on java 8 it is the
+ * private Lookup constructor. If neither works, or the metafactory rejects the conversion, this falls back to
+ * MethodHandleProxies, which is slower but adapts types more liberally.
+ *
+ * The resulting factory is cached per interface and member, so only the first call spins a class.
+ *
+ * @author yawkat
+ */
+final class Lambdas {
+    /**
+     * MethodHandles#privateLookupIn, or null before java 9.
+     */
+    private static final Method privateLookupIn;
+    /**
+     * The private Lookup constructor, only used on java 8.
+     */
+    private static final Constructor<MethodHandles.Lookup> lookupConstructor;
+    /**
+     * (Class, MethodHandle, Object)Object, see #proxy.
+     */
+    private static final MethodHandle proxyFactory;
+
+    static {
+        Method method;
+        try {
+            method = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (NoSuchMethodException e) {
+            method = null;
+        }
+        privateLookupIn = method;
+
+        Constructor<MethodHandles.Lookup> constructor = null;
+        if (method == null) {
+            try {
+                constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class);
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException | RuntimeException ignored) {}
+        }
+        lookupConstructor = constructor;
+
+        try {
+            proxyFactory = MethodHandles.lookup().findStatic(
+                    Lambdas.class, "proxy",
+                    MethodType.methodType(Object.class, Class.class, MethodHandle.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private Lambdas() {}
+
+    /**
+     * Implement the given functional interface with the given method or constructor.
+     *
+     * @param receiver The receiver to bind for instance methods, or null if the receiver should be the first
+     *                 argument of the interface method.
+     */
+    static <F> F implement(Class<F> functionalInterface, Member target, Object receiver) {
+        if (!functionalInterface.isInterface()) {
+            throw new IllegalArgumentException(functionalInterface.getName() + " is not an interface");
+        }
+        MethodHandle factory = Cache.owner(target.getDeclaringClass(), functionalInterface)
+                .lambdaFactory(new Key(functionalInterface, target, receiver != null), Lambdas::factory);
+        try {
+            Object instance;
+            if (receiver == null) {
+                instance = (Object) factory.invokeExact();
+            } else {
+                instance = (Object) factory.invokeExact(receiver);
+            }
+            return functionalInterface.cast(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            // the factories only allocate
+            throw new AssertionError(t);
+        }
+    }
+
+    /**
+     * Create the factory for a key: <code>()Object</code> if no receiver is bound, <code>(Object)Object</code>
+     * taking the receiver otherwise.
+     */
+    private static MethodHandle factory(Key key) {
+        Class<?> functionalInterface = key.functionalInterface;
+        Member target = key.target;
+        List<Method> abstractMethods = abstractMethods(functionalInterface);
+        Method sam = mostSpecific(functionalInterface, abstractMethods);
+
+        MethodHandles.Lookup caller = privateLookupIn(target.getDeclaringClass());
+        if (caller != null) {
+            try {
+                return metafactory(functionalInterface, sam, abstractMethods, caller, target, key.bound);
+            } catch (LambdaConversionException | IllegalArgumentException ignored) {
+                // types the metafactory won't adapt, try the proxy
+            }
+        }
+
+        MethodHandle handle = unreflect(MethodHandles.lookup(), target);
+        if (key.bound) {
+            return MethodHandles.insertArguments(proxyFactory, 0, functionalInterface, handle);
+        }
+        // without a bound receiver the proxy is stateless, so it can be shared
+        return MethodHandles.constant(Object.class, proxy(functionalInterface, handle, null));
+    }
+
+    /**
+     * @param receiver The receiver to bind to the handle, or null.
+     */
+    private static Object proxy(Class<?> functionalInterface, MethodHandle handle, Object receiver) {
+        try {
+            return MethodHandleProxies.asInterfaceInstance(
+                    functionalInterface, receiver == null ? handle : handle.bindTo(receiver));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cannot implement " + functionalInterface.getName() + " with " + handle,
+                                               e);
+        }
+    }
+
+    private static MethodHandle metafactory(Class<?> functionalInterface, Method sam, List<Method> abstractMethods,
+                                            MethodHandles.Lookup caller, Member target, boolean bound)
+            throws LambdaConversionException {
+        MethodHandle implementation = unreflect(caller, target);
+        MethodType samType = MethodType.methodType(sam.getReturnType(), sam.getParameterTypes());
+        MethodType invokedType;
+        MethodType implementationType = implementation.type();
+        if (!bound) {
+            invokedType = MethodType.methodType(functionalInterface);
+        } else {
+            invokedType = MethodType.methodType(functionalInterface, target.getDeclaringClass());
+            implementationType = implementationType.dropParameterTypes(0, 1);
+        }
+
+        List<MethodType> bridges = new ArrayList<>();
+        for (Method method : abstractMethods) {
+            MethodType bridge = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+            if (!bridge.equals(samType) && !bridges.contains(bridge)) {
+                bridges.add(bridge);
+            }
+        }
+        Object[] arguments = new Object[5 + bridges.size()];
+        arguments[0] = samType;
+        arguments[1] = implementation;
+        arguments[2] = instantiatedType(samType, implementationType);
+        arguments[3] = LambdaMetafactory.FLAG_BRIDGES;
+        arguments[4] = bridges.size();
+        for (int i = 0; i < bridges.size(); i++) {
+            arguments[5 + i] = bridges.get(i);
+        }
+
+        CallSite site = LambdaMetafactory.altMetafactory(caller, sam.getName(), invokedType, arguments);
+        MethodHandle factory = site.getTarget();
+        return factory.asType(factory.type().generic());
+    }
+
+    /**
+     * The SAM type specialized to the types of the implementation where the metafactory allows it: reference types
+     * that are more specific, and boxes of primitive implementation types.
+     */
+    private static MethodType instantiatedType(MethodType samType, MethodType implementationType) {
+        Class<?>[] parameters = samType.parameterArray();
+        for (int i = 0; i < parameters.length && i < implementationType.parameterCount(); i++) {
+            parameters[i] = specialize(parameters[i], implementationType.parameterType(i));
+        }
+        Class<?> returnType = samType.returnType();
+        if (implementationType.returnType() != void.class) {
+            returnType = specialize(returnType, implementationType.returnType());
+        }
+        return MethodType.methodType(returnType, parameters);
+    }
+
+    private static Class<?> specialize(Class<?> samType, Class<?> implementationType) {
+        if (samType.isPrimitive()) { return samType; }
+        Class<?> boxed = MethodType.methodType(implementationType).wrap().returnType();
+        return samType.isAssignableFrom(boxed) ? boxed : samType;
+    }
+
+    private static List<Method> abstractMethods(Class<?> functionalInterface) {
+        List<Method> abstractMethods = new ArrayList<>();
+        for (Method method : functionalInterface.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method)) {
+                abstractMethods.add(method);
+            }
+        }
+        return abstractMethods;
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The abstract method the others are erasures of (generic interfaces specializing another one declare more than
+     * one abstract method with the same name).
+     */
+    private static Method mostSpecific(Class<?> functionalInterface, List<Method> abstractMethods) {
+        outer:
+        for (Method candidate : abstractMethods) {
+            for (Method other : abstractMethods) {
+                if (!other.getName().equals(candidate.getName()) ||
+                    other.getParameterCount() != candidate.getParameterCount() ||
+                    !other.getReturnType().isAssignableFrom(candidate.getReturnType())) {
+                    continue outer;
+                }
+                for (int i = 0; i < candidate.getParameterCount(); i++) {
+                    if (!other.getParameterTypes()[i].isAssignableFrom(candidate.getParameterTypes()[i])) {
+                        continue outer;
+                    }
+                }
+            }
+            return candidate;
+        }
+        throw new IllegalArgumentException(functionalInterface.getName() + " is not a functional interface");
+    }
+
+    /**
+     * A lookup with private access to the given class, or null if there is none.
+     */
+    static MethodHandles.Lookup privateLookupIn(Class<?> type) {
+        if (privateLookupIn != null) {
+            try {
+                return (MethodHandles.Lookup) privateLookupIn.invoke(null, type, MethodHandles.lookup());
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // the package is not open to us
+                return null;
+            }
+        }
+        if (lookupConstructor != null) {
+            try {
+                return lookupConstructor.newInstance(type);
+            } catch (ReflectiveOperationException ignored) {}
+        }
+        return null;
+    }
+
+    private static MethodHandle unreflect(MethodHandles.Lookup lookup, Member target) {
+        try {
+            return target instanceof Method ?
+                    lookup.unreflect((Method) target) :
+                    lookup.unreflectConstructor((Constructor<?>) target);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    /**
+     * Cache key of a factory, see ClassInfo#lambdaFactory.
+     */
+    static final class Key {
+        final Class<?> functionalInterface;
+        final Member target;
+        final boolean bound;
+
+        Key(Class<?> functionalInterface, Member target, boolean bound) {
+            this.functionalInterface = functionalInterface;
+            this.target = target;
+            this.bound = bound;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) { return false; }
+            Key other = (Key) o;
+            return functionalInterface == other.functionalInterface && target.equals(other.target) &&
+                   bound == other.bound;
+        }
+
+        @Override
+        public int hashCode() {
+            return (functionalInterface.hashCode() * 31 + target.hashCode()) * 2 + (bound ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Configuration of the cache behind {@link Fields}, {@link Methods} and {@link Constructors}.
+ *
+ * The cache keeps the resolved members of each class. Its size is measured as the number of cached member references
+ * ("weight"). When the weight exceeds the configured maximum, whole classes are evicted according to the {@link
+ * EvictionPolicy} until the cache is comfortably below the maximum again. Evicted classes are simply resolved again on
+ * their next use. Cached classes can still be unloaded normally.
+ *
+ * Hit, miss and eviction counts are available through {@link #statistics()} and JMX. Resolving members and eviction
+ * runs are also reported as flight recorder events (at.yawk.reflect.MemberTableBuild and
+ * at.yawk.reflect.MemberCacheEviction) where JFR is available.
+ *
+ * @author yawkat
+ */
+public class MemberCache {
+    private static final String OBJECT_NAME = "at.yawk.reflect:type=MemberCache";
+
+    private MemberCache() {}
+
+    public static long getMaximumWeight() {
+        return Cache.maximumWeight;
+    }
+
+    /**
+     * Set the maximum number of member references to keep cached. Long.MAX_VALUE disables eviction.
+     */
+    public static void setMaximumWeight(long maximumWeight) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Negative maximum weight");
+        }
+        Cache.maximumWeight = maximumWeight;
+        Cache.evictIfNecessary();
+    }
+
+    public static EvictionPolicy getEvictionPolicy() {
+        return Cache.evictionPolicy;
+    }
+
+    public static void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        Cache.evictionPolicy = Objects.requireNonNull(evictionPolicy, "evictionPolicy");
+    }
+
+    /**
+     * Drop the cached members of the given class. Tables of subclasses, which include the members of this class, are
+     * not affected.
+     */
+    public static void invalidate(Class<?> type) {
+        Cache.invalidate(Objects.requireNonNull(type, "type"));
+    }
+
+    /**
+     * Drop the cached members of all classes defined by the given class loader, for example before reloading a
+     * plugin. Values cached for other classes that refer to classes of the loader (functional interfaces passed to
+     * asFunction or mirror interfaces, for example) are dropped too. Calling this is not required for the loader to be
+     * collected: such values are cached with the class that is unloaded first, and queries are only held weakly.
+     */
+    public static void invalidate(ClassLoader classLoader) {
+        Cache.invalidate(Objects.requireNonNull(classLoader, "classLoader"));
+    }
+
+    /**
+     * Drop all cached members.
+     */
+    public static void invalidateAll() {
+        Cache.invalidateIf(type -> true);
+    }
+
+    /**
+     * Resolve the fields, methods and constructors of the given classes in parallel on the common fork-join pool, so
+     * the first reflective accesses on them don't have to.
+     *
+     * @return How long the warm-up took.
+     */
+    public static Duration preload(Collection<? extends Class<?>> classes) {
+        return preload(classes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Resolve the fields, methods and constructors of the given classes in parallel on the given pool.
+     *
+     * @return How long the warm-up took.
+     */
+    public static Duration preload(Collection<? extends Class<?>> classes, ForkJoinPool pool) {
+        Objects.requireNonNull(classes, "classes");
+        Objects.requireNonNull(pool, "pool");
+        long start = System.nanoTime();
+        // parallel streams run on the pool they are started from
+        pool.submit(() -> classes.parallelStream().forEach(Cache::preload)).join();
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Live statistics of this cache.
+     */
+    public static MemberCacheMXBean statistics() {
+        return Cache.statistics;
+    }
+
+    /**
+     * Register #statistics with the platform MBean server as <code>at.yawk.reflect:type=MemberCache</code>. Does
+     * nothing if it is registered already.
+     */
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(Cache.statistics, name);
+            }
+        } catch (InstanceAlreadyExistsException ignored) {
+            // registered concurrently
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register MBean", e);
+        }
+    }
+}
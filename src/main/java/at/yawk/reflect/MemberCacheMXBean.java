@@ -0,0 +1,62 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+/**
+ * Statistics of the {@link MemberCache}. Counters are cumulative since startup. Obtain an instance through {@link
+ * MemberCache#statistics()} or register it with JMX using {@link MemberCache#registerMBean()}.
+ *
+ * @author yawkat
+ */
+public interface MemberCacheMXBean {
+    long getFieldHits();
+
+    long getFieldMisses();
+
+    long getFieldEvictions();
+
+    long getMethodHits();
+
+    long getMethodMisses();
+
+    long getMethodEvictions();
+
+    long getConstructorHits();
+
+    long getConstructorMisses();
+
+    long getConstructorEvictions();
+
+    /**
+     * Number of classes dropped through {@link MemberCache#invalidate}.
+     */
+    long getInvalidations();
+
+    /**
+     * Total time spent resolving members on cache misses.
+     */
+    long getBuildTimeNanos();
+
+    /**
+     * Number of classes that currently have members cached.
+     */
+    int getCachedClasses();
+
+    /**
+     * Number of cached member references, the weight that is compared against the maximum weight.
+     */
+    long getCachedMembers();
+
+    /**
+     * Rough estimate of the heap retained by the cache.
+     */
+    long getEstimatedRetainedBytes();
+
+    long getMaximumWeight();
+
+    void setMaximumWeight(long maximumWeight);
+}
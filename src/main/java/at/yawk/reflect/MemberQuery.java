@@ -0,0 +1,303 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A selector that is not bound to a class, built from the same filters as {@link Fields}, {@link Methods} and {@link
+ * Constructors}:
+ *
+ * <pre>
+ * static final MemberQuery&lt;Field&gt; JSON_FIELDS = MemberQuery.fields()
+ *         .withoutModifier(Modifier.STATIC | Modifier.TRANSIENT)
+ *         .match(f -&gt; f.isAnnotationPresent(Json.class));
+ *
+ * Fields.ofType(type, JSON_FIELDS).on(object).each(...);
+ * </pre>
+ *
+ * The matching members of each class are computed once and cached together with the other members of the class, so
+ * applying a query to a class it was applied to before is a single lookup. Queries should be built once and kept in a
+ * static field: the cache only holds a query weakly, since its predicates may come from any class loader, and its
+ * results are dropped once it is collected. Results are cached by query value: a query built again from the same
+ * filters and the same predicate objects (non-capturing lambdas are reused by the JVM) shares the cached results
+ * while an equal query is reachable, but every query with a capturing lambda gets its own entry. Cached results count
+ * towards the cache weight with the number of members they hold, and are dropped by
+ * MemberCache#invalidate(ClassLoader) for the loader of a predicate.
+ *
+ * Instances are immutable: every filter returns a new query.
+ *
+ * @author yawkat
+ */
+public final class MemberQuery<M extends Member> {
+    /**
+     * Member kind, one of the CacheStatistics constants.
+     */
+    private final int kind;
+    private final String name;
+    private final int requiredModifiers;
+    private final int forbiddenModifiers;
+    /**
+     * The predicates from #match, all of which have to match. Not composed so their classes can be checked in
+     * #refersTo, see #matches for the composed predicate.
+     */
+    private final List<Predicate<M>> predicates;
+    final SelectionMode selectionMode;
+    /**
+     * Created on first use, see #key.
+     */
+    private volatile Key key;
+
+    private MemberQuery(int kind, String name, int requiredModifiers, int forbiddenModifiers,
+                        List<Predicate<M>> predicates, SelectionMode selectionMode) {
+        this.kind = kind;
+        this.name = name;
+        this.requiredModifiers = requiredModifiers;
+        this.forbiddenModifiers = forbiddenModifiers;
+        this.predicates = predicates;
+        this.selectionMode = selectionMode;
+    }
+
+    private static <M extends Member> MemberQuery<M> empty(int kind) {
+        return new MemberQuery<>(kind, null, 0, 0, Collections.emptyList(), SelectionMode.ONLY);
+    }
+
+    public static MemberQuery<Field> fields() {
+        return empty(CacheStatistics.FIELD);
+    }
+
+    public static MemberQuery<Method> methods() {
+        return empty(CacheStatistics.METHOD);
+    }
+
+    public static MemberQuery<Constructor<?>> constructors() {
+        return empty(CacheStatistics.CONSTRUCTOR);
+    }
+
+    /**
+     * @see Members#name(String)
+     */
+    public MemberQuery<M> name(String name) {
+        Objects.requireNonNull(name, "name");
+        if (this.name != null && !this.name.equals(name)) {
+            // can't have two different names
+            return new MemberQuery<>(kind, this.name, requiredModifiers, forbiddenModifiers,
+                                     Collections.singletonList(m -> false), selectionMode);
+        }
+        return new MemberQuery<>(kind, name, requiredModifiers, forbiddenModifiers, predicates, selectionMode);
+    }
+
+    /**
+     * @see Members#modifier(int)
+     */
+    public MemberQuery<M> modifier(int modifier) {
+        return new MemberQuery<>(kind, name, requiredModifiers | modifier, forbiddenModifiers, predicates,
+                                 selectionMode);
+    }
+
+    /**
+     * @see Members#withoutModifier(int)
+     */
+    public MemberQuery<M> withoutModifier(int modifier) {
+        return new MemberQuery<>(kind, name, requiredModifiers, forbiddenModifiers | modifier, predicates,
+                                 selectionMode);
+    }
+
+    /**
+     * Only keep members matching the given predicate.
+     */
+    public MemberQuery<M> match(Predicate<M> predicate) {
+        Objects.requireNonNull(predicate, "predicate");
+        List<Predicate<M>> predicates = new ArrayList<>(this.predicates);
+        predicates.add(predicate);
+        return new MemberQuery<>(kind, name, requiredModifiers, forbiddenModifiers,
+                                 Collections.unmodifiableList(predicates), selectionMode);
+    }
+
+    /**
+     * The selection mode of selectors created from this query.
+     */
+    public MemberQuery<M> mode(SelectionMode selectionMode) {
+        Objects.requireNonNull(selectionMode, "selectionMode");
+        if (kind == CacheStatistics.FIELD &&
+            (selectionMode == SelectionMode.ALL || selectionMode == SelectionMode.BEST)) {
+            throw new UnsupportedOperationException("Cannot use SelectionMode." + selectionMode + " on fields");
+        }
+        return new MemberQuery<>(kind, name, requiredModifiers, forbiddenModifiers, predicates, selectionMode);
+    }
+
+    /**
+     * mode(SelectionMode.FIRST)
+     */
+    public MemberQuery<M> first() {
+        return mode(SelectionMode.FIRST);
+    }
+
+    /**
+     * mode(SelectionMode.ONLY)
+     */
+    public MemberQuery<M> only() {
+        return mode(SelectionMode.ONLY);
+    }
+
+    /**
+     * mode(SelectionMode.ALL)
+     */
+    public MemberQuery<M> all() {
+        return mode(SelectionMode.ALL);
+    }
+
+    /**
+     * Get the members of the given class that match this query (independent from SelectionMode), in the same order
+     * as a selector would use them.
+     */
+    @SuppressWarnings("unchecked")
+    public List<M> apply(Class<?> type) {
+        return Collections.unmodifiableList((List<M>) Arrays.asList(resolve(type)));
+    }
+
+    /**
+     * The cached result for the given class. Shared, must not be modified.
+     */
+    Member[] resolve(Class<?> type) {
+        return Cache.info(type).query(this);
+    }
+
+    /**
+     * The key of the cached results of this query. Racing threads may create more than one, they are all equal.
+     */
+    Key key() {
+        Key key = this.key;
+        if (key == null) {
+            this.key = key = new Key(this);
+        }
+        return key;
+    }
+
+    /**
+     * Compute the result for the given class. Called by ClassInfo on a cache miss.
+     */
+    @SuppressWarnings("unchecked")
+    Member[] compute(Class<?> type) {
+        MembersImpl<?, M, ?> selector;
+        switch (kind) {
+        case CacheStatistics.FIELD:
+            selector = (MembersImpl<?, M, ?>) new FieldsImpl<>(type);
+            break;
+        case CacheStatistics.METHOD:
+            selector = (MembersImpl<?, M, ?>) new MethodsImpl<>(type);
+            break;
+        case CacheStatistics.CONSTRUCTOR:
+            selector = (MembersImpl<?, M, ?>) new ConstructorsImpl<>(type);
+            break;
+        default:
+            throw new AssertionError(kind);
+        }
+        selector.pendingName = name;
+        selector.requiredModifiers = requiredModifiers;
+        selector.forbiddenModifiers = forbiddenModifiers;
+        selector.pendingPredicate = matches();
+        selector.resolve();
+        Member[] matching = selector.matching;
+        // keep sharing the table (or name index) array if nothing else was filtered
+        return !selector.matchingModifiable && selector.matchingLength == matching.length ?
+                matching :
+                Arrays.copyOf(matching, selector.matchingLength);
+    }
+
+    /**
+     * All #predicates composed, or null if there are none.
+     */
+    private Predicate<M> matches() {
+        if (predicates.isEmpty()) { return null; }
+        if (predicates.size() == 1) { return predicates.get(0); }
+        return member -> {
+            for (Predicate<M> predicate : predicates) {
+                if (!predicate.test(member)) { return false; }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Whether this query holds a predicate defined by the given loader, see ClassInfo#clearReferencesTo.
+     */
+    boolean refersTo(ClassLoader loader) {
+        for (Predicate<M> predicate : predicates) {
+            if (predicate.getClass().getClassLoader() == loader) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Queries are equal if they select the same members. The selection mode does not matter for that, and predicates
+     * are compared by identity.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof MemberQuery)) { return false; }
+        MemberQuery<?> other = (MemberQuery<?>) o;
+        if (kind != other.kind || requiredModifiers != other.requiredModifiers ||
+            forbiddenModifiers != other.forbiddenModifiers || !Objects.equals(name, other.name) ||
+            predicates.size() != other.predicates.size()) {
+            return false;
+        }
+        for (int i = 0; i < predicates.size(); i++) {
+            if (predicates.get(i) != other.predicates.get(i)) { return false; }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = kind;
+        hash = 31 * hash + Objects.hashCode(name);
+        hash = 31 * hash + requiredModifiers;
+        hash = 31 * hash + forbiddenModifiers;
+        for (Predicate<M> predicate : predicates) {
+            hash = 31 * hash + System.identityHashCode(predicate);
+        }
+        return hash;
+    }
+
+    /**
+     * Weak reference to a query, the key of its results in ClassInfo. Keys of equal queries are equal while both
+     * queries are reachable; a cleared key is only equal to itself.
+     */
+    static final class Key extends WeakReference<MemberQuery<?>> {
+        private final int hash;
+
+        Key(MemberQuery<?> query) {
+            super(query);
+            this.hash = query.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof Key)) { return false; }
+            MemberQuery<?> query = get();
+            return query != null && query.equals(((Key) o).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
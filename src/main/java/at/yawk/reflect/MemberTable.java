@@ -0,0 +1,62 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Member;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cached members of one kind (fields, methods or constructors) of a class, together with a lazily built index from
+ * member name to the members with that name.
+ *
+ * @author yawkat
+ */
+final class MemberTable<M extends Member> {
+    private static final Member[] NO_MEMBERS = new Member[0];
+
+    /**
+     * All members in hierarchy order. Shared, must not be modified.
+     */
+    final M[] members;
+    private volatile Map<String, Member[]> byName;
+
+    MemberTable(M[] members) {
+        this.members = members;
+    }
+
+    /**
+     * Get the members with the given name, in the same order as in #members. Shared, must not be modified.
+     */
+    Member[] byName(String name) {
+        Map<String, Member[]> index = byName;
+        if (index == null) {
+            // racy initialization is fine here: building the index twice yields an equivalent map
+            byName = index = buildIndex();
+        }
+        Member[] found = index.get(name);
+        return found == null ? NO_MEMBERS : found;
+    }
+
+    private Map<String, Member[]> buildIndex() {
+        Map<String, Member[]> index = new HashMap<>();
+        for (M member : members) {
+            Member[] previous = index.get(member.getName());
+            Member[] next;
+            if (previous == null) {
+                next = new Member[]{ member };
+            } else {
+                // most names are unique so growing one by one is fine
+                next = Arrays.copyOf(previous, previous.length + 1);
+                next[previous.length] = member;
+            }
+            index.put(member.getName(), next);
+        }
+        return index;
+    }
+}
@@ -27,4 +27,6 @@ public interface Members<T> {
     Members<T> statics();
 
     Members<T> on(T on);
+
+    Members<T> backend(AccessBackend backend);
 }
@@ -21,9 +21,39 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
      * Implementation of the Methods interfaces. Lots of lazy computations.
      */
 
+    private static final Object[] NO_ARGS = new Object[0];
+
+    /**
+     * The class whose members this selector started from.
+     */
+    ClassInfo info;
+    /*
+     * Filters that were not applied to #matching yet. They are all applied in a single pass by #resolve, so building a
+     * selector does no work until it is used.
+     */
+
+    /**
+     * Name filter, applied through the name index of the member table where possible.
+     */
+    String pendingName;
+    /**
+     * Modifiers a member must all have.
+     */
+    int requiredModifiers;
+    /**
+     * Modifiers a member must not have any of.
+     */
+    int forbiddenModifiers;
+    /**
+     * Predicates from #match, combined, or null.
+     */
+    Predicate<M> pendingPredicate;
     /**
      * Array of methods matching the restrictions given to this builder. Actual used length is
-     * #matchingLength, elements after that are to be ignored.
+     * #matchingLength, elements after that are to be ignored. Initially this is the array shared by the Cache, so it
+     * must only be changed if #matchingModifiable is set.
+     *
+     * This is null until it is first needed (see #resolve) so FIRST lookups can avoid resolving the whole hierarchy.
      */
     Member[] matching;
     /**
@@ -38,6 +68,14 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
      * Selection mode when meeting multiple matching methods.
      */
     SelectionMode selectionMode = SelectionMode.ONLY;
+    /**
+     * How to access the selected members.
+     */
+    AccessBackend backend = AccessBackend.ADAPTIVE;
+    /**
+     * Members chosen in BEST mode by argument classes. Created on first use, not copied to modified selectors.
+     */
+    InlineCache inlineCache;
     /**
      * Whether this Methods object should be considered immutable.
      */
@@ -51,76 +89,151 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
      */
     T handle = null;
 
-    MembersImpl(Member[] members) {
-        this.matching = members;
-        this.matchingModifiable = false;
-        this.matchingLength = this.matching.length;
+    MembersImpl(ClassInfo info) {
+        this.info = info;
     }
 
     MembersImpl() {}
 
     protected abstract S createEmpty();
 
-    @Override
-    public S name(String name) {
-        return match(m -> m.getName().equals(name));
+    /**
+     * Start from the cached result of the given query instead of all members. Called right after construction.
+     */
+    @SuppressWarnings("unchecked")
+    final S query(MemberQuery<?> query) {
+        matching = info.query(query);
+        matchingModifiable = false;
+        matchingLength = matching.length;
+        selectionMode = query.selectionMode;
+        return (S) this;
     }
 
-    @Override
-    public S modifier(int modifier) {
-        return match(m -> (m.getModifiers() & modifier) == modifier);
+    /**
+     * The cached member table of the given class for our member type.
+     */
+    abstract MemberTable<?> table(ClassInfo info);
+
+    /**
+     * The first member in #table order with the given name (or any name if null) that is accepted by the given filter
+     * (if not null), or null if there is none. May be overridden to avoid resolving the whole table.
+     */
+    Member lazyFirst(ClassInfo info, String name, Predicate<Member> filter) {
+        Member[] candidates = name == null ? table(info).members : table(info).byName(name);
+        for (Member candidate : candidates) {
+            if (filter == null || filter.test(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
     }
 
-    @Override
-    public S withoutModifier(int modifier) {
-        return match(m -> (m.getModifiers() & modifier) == 0);
+    /**
+     * Make sure #matching is available and all pending filters are applied.
+     */
+    final void resolve() {
+        if (matching == null || pendingName != null && matching == table(info).members) {
+            // nothing filtered yet, use the name index instead of scanning all members
+            MemberTable<?> table = table(info);
+            matching = pendingName == null ? table.members : table.byName(pendingName);
+            matchingModifiable = false;
+            matchingLength = matching.length;
+            pendingName = null;
+        }
+        if (pendingName != null || hasPendingFilters()) {
+            filter();
+        }
+    }
+
+    /**
+     * Whether there are pending filters other than the name.
+     */
+    private boolean hasPendingFilters() {
+        return requiredModifiers != 0 || forbiddenModifiers != 0 || pendingPredicate != null;
     }
 
     @SuppressWarnings("unchecked")
-    public S match(Predicate<M> predicate) {
-        Objects.requireNonNull(predicate, "predicate");
+    private boolean accepts(Member member) {
+        int modifiers = member.getModifiers();
+        return (pendingName == null || member.getName().equals(pendingName)) &&
+               (modifiers & requiredModifiers) == requiredModifiers &&
+               (modifiers & forbiddenModifiers) == 0 &&
+               (pendingPredicate == null || pendingPredicate.test((M) member));
+    }
 
-        // 'this' or a modifiable copy
-        S modifiable = modifiable();
+    /**
+     * Apply all pending filters to #matching in one pass.
+     */
+    private void filter() {
         // array we're moving accepted methods to. Can be #matching or a copy of it. Initialized when needed.
         Member[] targetArray = null;
         int back = 0;
-        for (int i = 0; i < modifiable.matchingLength; i++) {
-            Member member = modifiable.matching[i];
-            if (predicate.test((M) member)) {
-                // if we have to a) move array elements back or b) copy the array
-                if (back != 0 || !modifiable.matchingModifiable) {
-                    // create array lazily
-                    if (targetArray == null) {
-                        // reuse either our array or a copy
-                        targetArray = modifiable.matchingModifiable ?
-                                modifiable.matching :
-                                // clip to matchingLength
-                                Arrays.copyOf(modifiable.matching, modifiable.matchingLength);
-                    }
-                    // move back
+        for (int i = 0; i < matchingLength; i++) {
+            Member member = matching[i];
+            if (accepts(member)) {
+                // only have to move elements back once something was removed. Until then, the (possibly shared)
+                // array stays untouched and we don't need a copy at all.
+                if (back != 0) {
                     targetArray[i - back] = member;
                 }
             } else {
                 // create array lazily
                 if (targetArray == null) {
                     // reuse either our array or a copy
-                    targetArray = modifiable.matchingModifiable ?
-                            modifiable.matching :
+                    targetArray = matchingModifiable ?
+                            matching :
                             // don't need matchingLength, maximum one less
-                            Arrays.copyOf(modifiable.matching, modifiable.matchingLength - 1);
+                            Arrays.copyOf(matching, matchingLength - 1);
                 }
                 // move following entries one more back
                 back++;
             }
         }
         // change matchingLength according to removed elements
-        modifiable.matchingLength -= back;
+        matchingLength -= back;
         // if we created a targetArray, use that
         if (targetArray != null) {
-            modifiable.matching = targetArray;
-            modifiable.matchingModifiable = true;
+            matching = targetArray;
+            matchingModifiable = true;
         }
+        pendingName = null;
+        requiredModifiers = 0;
+        forbiddenModifiers = 0;
+        pendingPredicate = null;
+    }
+
+    @Override
+    public S name(String name) {
+        Objects.requireNonNull(name, "name");
+        S modifiable = modifiable();
+        if (modifiable.pendingName == null) {
+            modifiable.pendingName = name;
+        } else if (!modifiable.pendingName.equals(name)) {
+            // can't have two different names
+            modifiable.pendingPredicate = m -> false;
+        }
+        return modifiable;
+    }
+
+    @Override
+    public S modifier(int modifier) {
+        S modifiable = modifiable();
+        modifiable.requiredModifiers |= modifier;
+        return modifiable;
+    }
+
+    @Override
+    public S withoutModifier(int modifier) {
+        S modifiable = modifiable();
+        modifiable.forbiddenModifiers |= modifier;
+        return modifiable;
+    }
+
+    public S match(Predicate<M> predicate) {
+        Objects.requireNonNull(predicate, "predicate");
+        S modifiable = modifiable();
+        Predicate<M> pending = modifiable.pendingPredicate;
+        modifiable.pendingPredicate = pending == null ? predicate : pending.and(predicate);
         return modifiable;
     }
 
@@ -133,11 +246,20 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
             S n = createEmpty();
             n.hasHandle = this.hasHandle;
             n.handle = this.handle;
+            n.info = this.info;
+            n.pendingName = this.pendingName;
+            n.requiredModifiers = this.requiredModifiers;
+            n.forbiddenModifiers = this.forbiddenModifiers;
+            n.pendingPredicate = this.pendingPredicate;
             n.matching = this.matching;
             n.matchingModifiable = false;
             n.matchingLength = this.matchingLength;
+            n.selectionMode = this.selectionMode;
+            n.backend = this.backend;
             return n;
         } else {
+            // we're about to be changed
+            inlineCache = null;
             return (S) this;
         }
     }
@@ -149,6 +271,13 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
         return modifiable;
     }
 
+    @Override
+    public S backend(AccessBackend backend) {
+        S modifiable = modifiable();
+        modifiable.backend = Objects.requireNonNull(backend, "backend");
+        return modifiable;
+    }
+
     @Override
     public S first() {
         return mode(SelectionMode.FIRST);
@@ -163,9 +292,15 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
         return mode(SelectionMode.ALL);
     }
 
+    public S best() {
+        return mode(SelectionMode.BEST);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public S finish() {
+        // resolve now, this object may be shared between threads from now on
+        resolve();
         this.immutable = true;
         this.matchingModifiable = false;
         return (S) this;
@@ -193,11 +328,20 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
 
     @Override
     public String toString() {
+        resolve();
         return Arrays.asList(matching).subList(0, matchingLength).toString();
     }
 
     @SuppressWarnings("unchecked")
     public M handle() {
+        if (selectionMode == SelectionMode.FIRST && matching == null) {
+            Member found = lazyFirst(info, pendingName, hasPendingFilters() ? this::accepts : null);
+            if (found == null) {
+                throw new NoSuchElementException("No match");
+            }
+            return (M) found;
+        }
+        resolve();
         switch (selectionMode) {
         case ONLY:
             if (matchingLength > 1) {
@@ -213,4 +357,92 @@ abstract class MembersImpl<T, M extends Member, S extends MembersImpl<T, M, S>>
             throw new UnsupportedOperationException("Unsupported selection mode " + selectionMode);
         }
     }
+
+    /**
+     * The method handle accessor of the given member (see Cache#handle) if it should be accessed through method
+     * handles with the current backend, or null for core reflection.
+     */
+    final Object handles(Member member) {
+        switch (backend) {
+        case REFLECTION:
+            return null;
+        case METHOD_HANDLES:
+            return Cache.handle(member);
+        default:
+            return Cache.hotHandle(member);
+        }
+    }
+
+    /**
+     * The member to use for invoking with the given arguments in BEST mode.
+     *
+     * @param kind Member kind name for exception messages.
+     */
+    @SuppressWarnings("unchecked")
+    M best(String kind, Object[] args) {
+        Object[] arguments = args == null ? NO_ARGS : args;
+        InlineCache cache = inlineCache;
+        if (cache != null) {
+            Member cached = cache.get(arguments);
+            if (cached != null) { return (M) cached; }
+        }
+        return resolveBest(kind, arguments);
+    }
+
+    /**
+     * Like #best(String, Object[]) with the first #arity of the given arguments.
+     */
+    @SuppressWarnings("unchecked")
+    M best(String kind, int arity, Object a, Object b, Object c, Object d, Object e) {
+        InlineCache cache = inlineCache;
+        if (cache != null) {
+            Member cached = cache.get(arity, a, b, c, d, e);
+            if (cached != null) { return (M) cached; }
+        }
+        return resolveBest(kind, Arrays.copyOf(new Object[]{ a, b, c, d, e }, arity));
+    }
+
+    @SuppressWarnings("unchecked")
+    private M resolveBest(String kind, Object[] args) {
+        resolve();
+        Member found = Overloads.mostSpecific(matching, matchingLength, args);
+        if (found == null) {
+            throw new NoSuchElementException(kind + " not found for arguments " + Arrays.toString(args));
+        }
+        InlineCache cache = inlineCache;
+        if (cache == null) {
+            // racy initialization is fine, we only lose some cached entries
+            inlineCache = cache = new InlineCache();
+        }
+        cache.put(args, found);
+        return (M) found;
+    }
+
+    /**
+     * The member to use for operations on a single member in FIRST or ONLY mode. Unlike #handle, this rejects ALL.
+     *
+     * @param kind Member kind name for exception messages.
+     */
+    @SuppressWarnings("unchecked")
+    M single(String kind) {
+        if (selectionMode == SelectionMode.FIRST && matching == null) {
+            // only resolve as much of the hierarchy as we need
+            Member found = lazyFirst(info, pendingName, hasPendingFilters() ? this::accepts : null);
+            if (found == null) { throw new NoSuchElementException(kind + " not found"); }
+            return (M) found;
+        }
+        resolve();
+        switch (selectionMode) {
+        case ONLY:
+            if (matchingLength > 1) {
+                throw new IllegalStateException("Too many " + kind.toLowerCase() + "s found: " + this);
+            }
+            // same behaviour as first apart from this
+        case FIRST:
+            if (matchingLength < 1) { throw new NoSuchElementException(kind + " not found"); }
+            return (M) matching[0];
+        default:
+            throw new UnsupportedOperationException("Unsupported selection mode " + selectionMode);
+        }
+    }
 }
@@ -0,0 +1,348 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * FieldAccessor using method handles.
+ *
+ * Receivers, values and primitive conversions are checked before calling the handles, so errors are reported like
+ * Field#get and Field#set report them (NullPointerException for a missing receiver, IllegalArgumentException for
+ * anything else) instead of as ClassCastException or with conversions that reflection doesn't allow.
+ *
+ * @author yawkat
+ */
+final class MethodHandleFieldAccessor<T, R> implements FieldAccessor<T, R> {
+    /**
+     * FieldAccessor#set, for fields without a setter handle.
+     */
+    private static final MethodHandle reflectiveSet;
+
+    static {
+        try {
+            reflectiveSet = MethodHandles.lookup().findVirtual(
+                    FieldAccessor.class, "set", MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private final Field field;
+    /**
+     * Type the receiver must have, or null for static fields.
+     */
+    private final Class<?> receiverType;
+    /**
+     * (Object)Object
+     */
+    private final MethodHandle getter;
+    /**
+     * (Object, Object)void
+     */
+    private final MethodHandle setter;
+    /**
+     * Like #getter and #setter, but with the field's own type.
+     */
+    private final MethodHandle exactGetter;
+    private final MethodHandle exactSetter;
+    /**
+     * Getter and setter handles adapted to primitive types, created on first use and indexed by #typeIndex. Racy
+     * initialization is fine, the handles are equivalent.
+     */
+    private final MethodHandle[] primitiveGetters = new MethodHandle[8];
+    private final MethodHandle[] primitiveSetters = new MethodHandle[8];
+
+    MethodHandleFieldAccessor(Field field) {
+        this.field = field;
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        this.receiverType = isStatic ? null : field.getDeclaringClass();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> type = field.getType();
+        try {
+            MethodHandle getter = lookup.unreflectGetter(field);
+            if (isStatic) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            this.exactGetter = getter.asType(MethodType.methodType(type, Object.class));
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+        MethodHandle setter;
+        try {
+            setter = lookup.unreflectSetter(field);
+            if (isStatic) {
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            }
+            setter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+        } catch (IllegalAccessException e) {
+            // static final field, those can only be written like Fields#set does
+            setter = reflectiveSet.bindTo(new ReflectiveFieldAccessor<>(field))
+                    .asType(MethodType.methodType(void.class, Object.class, type));
+        }
+        this.exactSetter = setter;
+        // values are checked by #set, explicit casts also unbox and widen like Field#set
+        this.setter = MethodHandles.explicitCastArguments(
+                setter, MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public R get(T on) {
+        checkReceiver(on);
+        try {
+            return (R) (Object) getter.invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void set(T on, R value) {
+        checkReceiver(on);
+        if (!Overloads.accepts(field.getType(), value)) {
+            throw new IllegalArgumentException(
+                    "Can not set " + field + " to " + (value == null ? "null value" : value.getClass().getName()));
+        }
+        try {
+            setter.invokeExact((Object) on, (Object) value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(T on) {
+        checkReceiver(on);
+        try {
+            return (boolean) primitiveGetter(0, boolean.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setBoolean(T on, boolean value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(0, boolean.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public byte getByte(T on) {
+        checkReceiver(on);
+        try {
+            return (byte) primitiveGetter(1, byte.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setByte(T on, byte value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(1, byte.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public char getChar(T on) {
+        checkReceiver(on);
+        try {
+            return (char) primitiveGetter(2, char.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setChar(T on, char value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(2, char.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public short getShort(T on) {
+        checkReceiver(on);
+        try {
+            return (short) primitiveGetter(3, short.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setShort(T on, short value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(3, short.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public int getInt(T on) {
+        checkReceiver(on);
+        try {
+            return (int) primitiveGetter(4, int.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setInt(T on, int value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(4, int.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public long getLong(T on) {
+        checkReceiver(on);
+        try {
+            return (long) primitiveGetter(5, long.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setLong(T on, long value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(5, long.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public float getFloat(T on) {
+        checkReceiver(on);
+        try {
+            return (float) primitiveGetter(6, float.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setFloat(T on, float value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(6, float.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public double getDouble(T on) {
+        checkReceiver(on);
+        try {
+            return (double) primitiveGetter(7, double.class).invokeExact((Object) on);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    @Override
+    public void setDouble(T on, double value) {
+        checkReceiver(on);
+        try {
+            primitiveSetter(7, double.class).invokeExact((Object) on, value);
+        } catch (Throwable t) {
+            throw unchecked(t);
+        }
+    }
+
+    /**
+     * Rethrow what a handle threw. Field access doesn't throw checked exceptions.
+     */
+    private static RuntimeException unchecked(Throwable t) {
+        if (t instanceof RuntimeException) { return (RuntimeException) t; }
+        if (t instanceof Error) { throw (Error) t; }
+        throw new AssertionError(t);
+    }
+
+    private void checkReceiver(Object on) {
+        if (receiverType != null && !receiverType.isInstance(on)) {
+            if (on == null) { throw new NullPointerException("Cannot access instance field " + field + " on null"); }
+            throw new IllegalArgumentException("Can not access " + field + " on " + on.getClass().getName());
+        }
+    }
+
+    /**
+     * @param index Index of the primitive type in the order of Fields#getBoolean to Fields#getDouble.
+     */
+    private MethodHandle primitiveGetter(int index, Class<?> type) {
+        MethodHandle handle = primitiveGetters[index];
+        if (handle == null) {
+            primitiveGetters[index] = handle = adapt(exactGetter, MethodType.methodType(type, Object.class));
+        }
+        return handle;
+    }
+
+    /**
+     * @see #primitiveGetter
+     */
+    private MethodHandle primitiveSetter(int index, Class<?> type) {
+        MethodHandle handle = primitiveSetters[index];
+        if (handle == null) {
+            primitiveSetters[index] = handle =
+                    adapt(exactSetter, MethodType.methodType(void.class, Object.class, type));
+        }
+        return handle;
+    }
+
+    /**
+     * Adapt one of the exact handles to a primitive type. Primitive fields only allow widening conversions, like
+     * Field#getInt and friends do.
+     */
+    private MethodHandle adapt(MethodHandle exact, MethodType type) {
+        if (!field.getType().isPrimitive()) {
+            // asType would box and unbox, Field doesn't
+            throw new IllegalArgumentException("Cannot convert " + field + " to " + type);
+        }
+        try {
+            return exact.asType(type);
+        } catch (WrongMethodTypeException e) {
+            throw new IllegalArgumentException("Cannot convert " + field + " to " + type, e);
+        }
+    }
+
+    @Override
+    public Field field() {
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return field.toString();
+    }
+}
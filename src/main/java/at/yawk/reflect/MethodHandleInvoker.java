@@ -0,0 +1,152 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invoker using a method handle adapted to <code>(Object, Object[])Object</code>, plus the unspread handle for the
+ * fixed-arity invoke methods.
+ *
+ * Receiver, argument count and argument types are checked before calling the handle, with the same rules and
+ * exceptions as Method#invoke, so only exceptions thrown by the target itself are wrapped in an
+ * InvocationTargetException.
+ *
+ * @author yawkat
+ */
+final class MethodHandleInvoker extends Invoker {
+    /**
+     * Highest number of arguments that has a fixed-arity invoke method.
+     */
+    static final int MAX_FIXED_ARITY = 5;
+
+    /**
+     * (Object, Object[])Object
+     */
+    private final MethodHandle handle;
+    /**
+     * (Object, Object...)Object with one Object parameter per argument, or null if there are more than
+     * #MAX_FIXED_ARITY arguments.
+     */
+    private final MethodHandle fixed;
+    /**
+     * Type the receiver must have, or null if it is ignored (static methods and constructors).
+     */
+    private final Class<?> receiverType;
+    private final Class<?>[] parameterTypes;
+
+    private MethodHandleInvoker(MethodHandle handle, Class<?> receiverType, Class<?>[] parameterTypes) {
+        this.receiverType = receiverType;
+        this.parameterTypes = parameterTypes;
+        // varargs handles would collect trailing arguments instead of taking the array as-is like Method#invoke
+        handle = handle.asFixedArity();
+        // the arguments are checked before each call, so explicit casts never fail. Unlike asType, they also widen
+        // unboxed primitives like Method#invoke does.
+        handle = MethodHandles.explicitCastArguments(handle, handle.type().generic());
+        this.fixed = parameterTypes.length <= MAX_FIXED_ARITY ? handle : null;
+        this.handle = handle.asSpreader(Object[].class, parameterTypes.length);
+    }
+
+    static MethodHandleInvoker of(Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            return new MethodHandleInvoker(MethodHandles.dropArguments(handle, 0, Object.class), null,
+                                           method.getParameterTypes());
+        }
+        return new MethodHandleInvoker(handle, method.getDeclaringClass(), method.getParameterTypes());
+    }
+
+    static MethodHandleInvoker of(Constructor<?> constructor) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+        return new MethodHandleInvoker(MethodHandles.dropArguments(handle, 0, Object.class), null,
+                                       constructor.getParameterTypes());
+    }
+
+    private void checkReceiver(Object on) {
+        if (receiverType != null && !receiverType.isInstance(on)) {
+            if (on == null) { throw new NullPointerException(); }
+            throw new IllegalArgumentException("object is not an instance of declaring class");
+        }
+    }
+
+    private void checkArity(int arity) {
+        if (arity != parameterTypes.length) {
+            throw new IllegalArgumentException(
+                    "wrong number of arguments: " + arity + " expected: " + parameterTypes.length);
+        }
+    }
+
+    private void checkArgument(int index, Object arg) {
+        if (!Overloads.accepts(parameterTypes[index], arg)) {
+            throw new IllegalArgumentException("argument type mismatch");
+        }
+    }
+
+    @Override
+    Object invoke(Object on, Object[] args) {
+        Object[] arguments = args == null ? NO_ARGS : args;
+        checkReceiver(on);
+        checkArity(arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            checkArgument(i, arguments[i]);
+        }
+        try {
+            return (Object) handle.invokeExact(on, arguments);
+        } catch (Throwable t) {
+            // report like Method#invoke so callers don't have to care about the backend
+            throw new UncheckedReflectiveOperationException(new InvocationTargetException(t));
+        }
+    }
+
+    @Override
+    Object invoke(int arity, Object on, Object a, Object b, Object c, Object d, Object e) {
+        checkReceiver(on);
+        checkArity(arity);
+        if (arity > 0) { checkArgument(0, a); }
+        if (arity > 1) { checkArgument(1, b); }
+        if (arity > 2) { checkArgument(2, c); }
+        if (arity > 3) { checkArgument(3, d); }
+        if (arity > 4) { checkArgument(4, e); }
+        try {
+            switch (arity) {
+            case 0:
+                return (Object) fixed.invokeExact(on);
+            case 1:
+                return (Object) fixed.invokeExact(on, a);
+            case 2:
+                return (Object) fixed.invokeExact(on, a, b);
+            case 3:
+                return (Object) fixed.invokeExact(on, a, b, c);
+            case 4:
+                return (Object) fixed.invokeExact(on, a, b, c, d);
+            case 5:
+                return (Object) fixed.invokeExact(on, a, b, c, d, e);
+            default:
+                throw new AssertionError(arity);
+            }
+        } catch (Throwable t) {
+            throw new UncheckedReflectiveOperationException(new InvocationTargetException(t));
+        }
+    }
+
+    private static final Object[] NO_ARGS = new Object[0];
+}
@@ -18,6 +18,13 @@ public interface Methods<T, R> extends Members<T> {
         return new MethodsImpl<>(clazz);
     }
 
+    /**
+     * Select the methods of the given class matching the given query, see {@link MemberQuery}.
+     */
+    public static <T, R> Methods<T, R> ofType(Class<T> clazz, MemberQuery<Method> query) {
+        return new MethodsImpl<T, R>(clazz).query(query);
+    }
+
     @SuppressWarnings("unchecked")
     public static <R> Methods<?, R> of(Object obj) {
         return Methods.<Object, R>ofType((Class) obj.getClass()).on(obj);
@@ -68,12 +75,23 @@ public interface Methods<T, R> extends Members<T> {
      */
     Methods<T, R> all();
 
+    /**
+     * mode(SelectionMode.BEST)
+     */
+    Methods<T, R> best();
+
     /**
      * mode(SelectionMode.ONLY)
      */
     @Override
     Methods<T, R> only();
 
+    /**
+     * Choose how the selected members are accessed. Defaults to AccessBackend.ADAPTIVE.
+     */
+    @Override
+    Methods<T, R> backend(AccessBackend backend);
+
     /**
      * Make this object immutable. Subsequent calls will yield a copy of this object and will not modify this object.
      */
@@ -104,6 +122,25 @@ public interface Methods<T, R> extends Members<T> {
     // explicitly on construction.
     <Return extends R> Return invoke(Object... args) throws UncheckedReflectiveOperationException;
 
+    /*
+     * Fixed-arity variants of #invoke that don't need an argument array. These always use method handles like
+     * AccessBackend.METHOD_HANDLES, core reflection would need the array anyway.
+     */
+
+    <Return extends R> Return invoke0() throws UncheckedReflectiveOperationException;
+
+    <Return extends R> Return invoke1(Object a) throws UncheckedReflectiveOperationException;
+
+    <Return extends R> Return invoke2(Object a, Object b) throws UncheckedReflectiveOperationException;
+
+    <Return extends R> Return invoke3(Object a, Object b, Object c) throws UncheckedReflectiveOperationException;
+
+    <Return extends R> Return invoke4(Object a, Object b, Object c, Object d)
+            throws UncheckedReflectiveOperationException;
+
+    <Return extends R> Return invoke5(Object a, Object b, Object c, Object d, Object e)
+            throws UncheckedReflectiveOperationException;
+
     default <NewT> Methods<?, NewT> methods(Object... args) {
         return Methods.of((Object) invoke(args));
     }
@@ -118,5 +155,17 @@ public interface Methods<T, R> extends Members<T> {
      */
     void each(Consumer<R> consumer, Object... args);
 
+    /**
+     * Implement the given functional interface with the selected method, so it can be called without any reflection
+     * overhead. If this object has an instance handle, it is bound as the receiver; otherwise the receiver of an
+     * instance method is the first argument of the interface method.
+     *
+     * The implementing class is generated on the first call for an interface and method (and whether a receiver is
+     * bound) and kept in the member cache, so later calls only create an instance. Eviction, and {@link
+     * MemberCache#invalidate(ClassLoader)} for the loader of the interface or of the method's class, drop the cached
+     * factory; the next call generates the class again.
+     */
+    <F> F asFunction(Class<F> functionalInterface) throws UncheckedReflectiveOperationException;
+
     Method handle();
 }
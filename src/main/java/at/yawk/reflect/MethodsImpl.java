@@ -9,16 +9,17 @@ package at.yawk.reflect;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.NoSuchElementException;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * @author yawkat
  */
 class MethodsImpl<T, R> extends MembersImpl<T, Method, MethodsImpl<T, R>> implements Methods<T, R> {
     public MethodsImpl(Class<?> declaring) {
-        super(Cache.getMethods(declaring));
+        super(Cache.info(declaring));
     }
 
     MethodsImpl() {}
@@ -28,8 +29,20 @@ class MethodsImpl<T, R> extends MembersImpl<T, Method, MethodsImpl<T, R>> implem
         return new MethodsImpl<>();
     }
 
+    @Override
+    MemberTable<?> table(ClassInfo info) {
+        return info.methods();
+    }
+
+    @Override
+    Member lazyFirst(ClassInfo info, String name, Predicate<Member> filter) {
+        // see ClassInfo#firstMethod for why filters need the whole table
+        return filter == null ? info.firstMethod(name) : super.lazyFirst(info, name, filter);
+    }
+
     @Override
     public void eachMethod(ReflectiveConsumer<Method> consumer) throws UncheckedReflectiveOperationException {
+        resolve();
         for (int i = 0; i < matchingLength; i++) {
             try {
                 consumer.consume((Method) matching[i]);
@@ -45,8 +58,60 @@ class MethodsImpl<T, R> extends MembersImpl<T, Method, MethodsImpl<T, R>> implem
         return (SubR) invoke(handle, args);
     }
 
+    @Override
+    public <SubR extends R> SubR invoke0() {
+        return invokeFixed(0, null, null, null, null, null);
+    }
+
+    @Override
+    public <SubR extends R> SubR invoke1(Object a) {
+        return invokeFixed(1, a, null, null, null, null);
+    }
+
+    @Override
+    public <SubR extends R> SubR invoke2(Object a, Object b) {
+        return invokeFixed(2, a, b, null, null, null);
+    }
+
+    @Override
+    public <SubR extends R> SubR invoke3(Object a, Object b, Object c) {
+        return invokeFixed(3, a, b, c, null, null);
+    }
+
+    @Override
+    public <SubR extends R> SubR invoke4(Object a, Object b, Object c, Object d) {
+        return invokeFixed(4, a, b, c, d, null);
+    }
+
+    @Override
+    public <SubR extends R> SubR invoke5(Object a, Object b, Object c, Object d, Object e) {
+        return invokeFixed(5, a, b, c, d, e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <SubR extends R> SubR invokeFixed(int arity, Object a, Object b, Object c, Object d, Object e) {
+        switch (selectionMode) {
+        case ALL:
+            resolve();
+            Object returnValue = null;
+            for (int i = 0; i < matchingLength; i++) {
+                returnValue = Cache.methodHandle((Method) matching[i]).invoke(arity, handle, a, b, c, d, e);
+            }
+            return (SubR) returnValue;
+        case ONLY:
+        case FIRST:
+            return (SubR) Cache.methodHandle(single("Method")).invoke(arity, handle, a, b, c, d, e);
+        case BEST:
+            return (SubR) Cache.methodHandle(best("Method", arity, a, b, c, d, e))
+                    .invoke(arity, handle, a, b, c, d, e);
+        default:
+            throw new UnsupportedOperationException("Unsupported selection mode " + selectionMode);
+        }
+    }
+
     @Override
     public void each(Consumer<R> consumer, Object... args) {
+        resolve();
         for (int i = 0; i < matchingLength; i++) {
             R value = doInvoke((Method) matching[i], handle, args);
             consumer.accept(value);
@@ -56,26 +121,37 @@ class MethodsImpl<T, R> extends MembersImpl<T, Method, MethodsImpl<T, R>> implem
     private R invoke(T instance, Object... args) {
         switch (selectionMode) {
         case ALL:
+            resolve();
             R returnValue = null;
             for (int i = 0; i < matchingLength; i++) {
                 returnValue = doInvoke((Method) matching[i], instance, args);
             }
             return returnValue;
         case ONLY:
-            if (matchingLength > 1) {
-                throw new IllegalStateException("Too many methods found: " + this);
-            }
-            // same behaviour as first apart from this
         case FIRST:
-            if (matchingLength < 1) { throw new NoSuchElementException("Method not found"); }
-            return doInvoke((Method) matching[0], instance, args);
+            return doInvoke(single("Method"), instance, args);
+        case BEST:
+            return doInvoke(best("Method", args), instance, args);
         default:
             throw new UnsupportedOperationException("Unsupported selection mode " + selectionMode);
         }
     }
 
+    @Override
+    public <F> F asFunction(Class<F> functionalInterface) {
+        Objects.requireNonNull(functionalInterface, "functionalInterface");
+        Method method = single("Method");
+        // statics() sets a null handle, leave the receiver of instance methods unbound then
+        Object receiver = Modifier.isStatic(method.getModifiers()) ? null : handle;
+        return Lambdas.implement(functionalInterface, method, receiver);
+    }
+
     @SuppressWarnings("unchecked")
     private R doInvoke(Method method, T on, Object[] args) {
+        Invoker invoker = (Invoker) handles(method);
+        if (invoker != null) {
+            return (R) invoker.invoke(on, args);
+        }
         try {
             return (R) method.invoke(on, args);
         } catch (IllegalAccessException | InvocationTargetException e) {
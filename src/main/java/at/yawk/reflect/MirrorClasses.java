@@ -0,0 +1,356 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generated implementations of mirror interfaces, see MirrorPlan. Each method of the generated class calls invokeExact
+ * on a method handle stored in a static final field, so the JIT treats the handle as a constant and can inline the
+ * mirrored member. There is no boxing and no argument array.
+ *
+ * On java 16+ the class is a hidden class that gets its handles as class data. That needs full privilege access to
+ * the mirror interface, which privateLookupIn only grants for interfaces in the same module as this library (on the
+ * class path: loaded by the same class loader). Before java 16 it is a VM anonymous class that gets its handles by
+ * constant pool patching. If the class cannot be defined, #implement returns null and mirrors use proxies.
+ *
+ * @author yawkat
+ */
+final class MirrorClasses {
+    private static final String HANDLE = "java/lang/invoke/MethodHandle";
+    private static final String HANDLES = "java/lang/invoke/MethodHandles";
+    private static final String LOOKUP = "Ljava/lang/invoke/MethodHandles$Lookup;";
+    /**
+     * String constant replaced by the handle array on VM anonymous classes.
+     */
+    private static final String HANDLES_PLACEHOLDER = "<mirror handles>";
+
+    /**
+     * Lookup#defineHiddenClassWithClassData, or null before java 16.
+     */
+    private static final Method defineHiddenClassWithClassData;
+    /**
+     * An empty Lookup.ClassOption array for #defineHiddenClassWithClassData.
+     */
+    private static final Object noClassOptions;
+    /**
+     * Unsafe#defineAnonymousClass, only used if there are no hidden classes and null if it does not exist.
+     */
+    private static final Method defineAnonymousClass;
+
+    static {
+        Method hidden = null;
+        Object options = null;
+        try {
+            Class<?> optionType = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(optionType, 0);
+            hidden = MethodHandles.Lookup.class.getMethod(
+                    "defineHiddenClassWithClassData", byte[].class, Object.class, boolean.class, options.getClass());
+        } catch (ClassNotFoundException | NoSuchMethodException ignored) {}
+        defineHiddenClassWithClassData = hidden;
+        noClassOptions = options;
+
+        Method anonymous = null;
+        if (hidden == null) {
+            try {
+                anonymous = sun.misc.Unsafe.class.getMethod(
+                        "defineAnonymousClass", Class.class, byte[].class, Object[].class);
+            } catch (NoSuchMethodException ignored) {}
+        }
+        defineAnonymousClass = anonymous;
+    }
+
+    private MirrorClasses() {}
+
+    /**
+     * Implement a mirror interface.
+     *
+     * @param handles  The mirror methods with handles of their exact type plus a leading Object target. Methods with
+     *                 the same signature are only implemented once.
+     * @param toString <code>(Object)String</code> handle implementing toString.
+     * @return A <code>(Object)Object</code> constructor taking the target, or null if the class cannot be defined.
+     */
+    static MethodHandle implement(Class<?> mirror, Map<Method, MethodHandle> handles, MethodHandle toString) {
+        List<String> names = new ArrayList<>();
+        List<MethodType> types = new ArrayList<>();
+        List<MethodHandle> data = new ArrayList<>();
+        Set<String> signatures = new HashSet<>();
+        for (Map.Entry<Method, MethodHandle> entry : handles.entrySet()) {
+            Method method = entry.getKey();
+            MethodType type = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+            if (signatures.add(method.getName() + type.toMethodDescriptorString())) {
+                names.add(method.getName());
+                types.add(type);
+                data.add(entry.getValue());
+            }
+        }
+        if (signatures.add("toString()Ljava/lang/String;")) {
+            names.add("toString");
+            types.add(MethodType.methodType(String.class));
+            data.add(toString);
+        }
+
+        String name = mirror.getName().replace('.', '/') + "$Mirror";
+        try {
+            if (defineHiddenClassWithClassData != null) {
+                MethodHandles.Lookup host = Lambdas.privateLookupIn(mirror);
+                if (host == null) { return null; }
+                byte[] bytes = generate(name, mirror, names, types, false).bytes;
+                MethodHandles.Lookup lookup = (MethodHandles.Lookup) defineHiddenClassWithClassData.invoke(
+                        host, bytes, data.toArray(), true, noClassOptions);
+                return constructor(lookup, lookup.lookupClass());
+            } else if (defineAnonymousClass != null) {
+                ClassFile file = generate(name, mirror, names, types, true);
+                Object[] patches = new Object[file.pool.count + 1];
+                patches[file.pool.string(HANDLES_PLACEHOLDER)] = data.toArray();
+                Class<?> type = (Class<?>) defineAnonymousClass.invoke(
+                        Unsafes.getUnsafe(), mirror, file.bytes, patches);
+                return constructor(MethodHandles.lookup(), type);
+            } else {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // no access to the package of the mirror, or the JVM won't define the class
+            return null;
+        }
+    }
+
+    private static MethodHandle constructor(MethodHandles.Lookup lookup, Class<?> type)
+            throws ReflectiveOperationException {
+        return lookup.findConstructor(type, MethodType.methodType(void.class, Object.class))
+                .asType(MethodType.methodType(Object.class, Object.class));
+    }
+
+    /**
+     * Generate the class file. The class has a constructor taking the target, and each method i calls the handle in
+     * the static field hi with the target and its parameters.
+     *
+     * @param patched Whether the handle array is patched into the constant pool (VM anonymous classes) instead of
+     *                being read as class data (hidden classes).
+     */
+    private static ClassFile generate(String name, Class<?> mirror, List<String> names, List<MethodType> types,
+                                      boolean patched) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+
+        out.writeShort(0x0031); // public final super
+        out.writeShort(pool.classRef(name));
+        out.writeShort(pool.classRef("java/lang/Object"));
+        out.writeShort(1);
+        out.writeShort(pool.classRef(mirror.getName().replace('.', '/')));
+
+        out.writeShort(types.size() + 1);
+        for (int i = 0; i < types.size(); i++) {
+            field(out, pool, 0x001A, "h" + i, "L" + HANDLE + ";"); // private static final
+        }
+        field(out, pool, 0x0012, "target", "Ljava/lang/Object;"); // private final
+        int target = pool.fieldRef(name, "target", "Ljava/lang/Object;");
+
+        out.writeShort(types.size() + 2);
+
+        // <init>(Object): super(); this.target = target;
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        DataOutputStream c = new DataOutputStream(code);
+        c.writeByte(0x2A); // aload_0
+        c.writeByte(0xB7); // invokespecial
+        c.writeShort(pool.methodRef("java/lang/Object", "<init>", "()V"));
+        c.writeByte(0x2A); // aload_0
+        c.writeByte(0x2B); // aload_1
+        c.writeByte(0xB5); // putfield
+        c.writeShort(target);
+        c.writeByte(0xB1); // return
+        method(out, pool, 0x0001, "<init>", "(Ljava/lang/Object;)V", 2, 2, code.toByteArray());
+
+        // <clinit>: hi = (MethodHandle) handles[i];
+        code.reset();
+        if (patched) {
+            c.writeByte(0x13); // ldc_w
+            c.writeShort(pool.string(HANDLES_PLACEHOLDER));
+        } else {
+            c.writeByte(0xB8); // invokestatic
+            c.writeShort(pool.methodRef(HANDLES, "lookup", "()" + LOOKUP));
+            c.writeByte(0x13); // ldc_w
+            c.writeShort(pool.string("_"));
+            c.writeByte(0x13); // ldc_w
+            c.writeShort(pool.classRef("[Ljava/lang/Object;"));
+            c.writeByte(0xB8); // invokestatic
+            c.writeShort(pool.methodRef(HANDLES, "classData",
+                                        "(" + LOOKUP + "Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;"));
+        }
+        c.writeByte(0xC0); // checkcast
+        c.writeShort(pool.classRef("[Ljava/lang/Object;"));
+        c.writeByte(0x4B); // astore_0
+        for (int i = 0; i < types.size(); i++) {
+            c.writeByte(0x2A); // aload_0
+            c.writeByte(0x11); // sipush
+            c.writeShort(i);
+            c.writeByte(0x32); // aaload
+            c.writeByte(0xC0); // checkcast
+            c.writeShort(pool.classRef(HANDLE));
+            c.writeByte(0xB3); // putstatic
+            c.writeShort(pool.fieldRef(name, "h" + i, "L" + HANDLE + ";"));
+        }
+        c.writeByte(0xB1); // return
+        method(out, pool, 0x0008, "<clinit>", "()V", 3, 1, code.toByteArray());
+
+        // return hi.invokeExact(target, parameters...);
+        for (int i = 0; i < types.size(); i++) {
+            MethodType type = types.get(i);
+            code.reset();
+            c.writeByte(0xB2); // getstatic
+            c.writeShort(pool.fieldRef(name, "h" + i, "L" + HANDLE + ";"));
+            c.writeByte(0x2A); // aload_0
+            c.writeByte(0xB4); // getfield
+            c.writeShort(target);
+            int slot = 1;
+            for (Class<?> parameter : type.parameterArray()) {
+                c.writeByte(loadOpcode(parameter));
+                c.writeByte(slot);
+                slot += parameter == long.class || parameter == double.class ? 2 : 1;
+            }
+            c.writeByte(0xB6); // invokevirtual
+            c.writeShort(pool.methodRef(HANDLE, "invokeExact",
+                                        type.insertParameterTypes(0, Object.class).toMethodDescriptorString()));
+            c.writeByte(returnOpcode(type.returnType()));
+            method(out, pool, 0x0001, names.get(i), type.toMethodDescriptorString(), slot + 1, slot,
+                   code.toByteArray());
+        }
+
+        out.writeShort(0); // attributes
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(file);
+        header.writeInt(0xCAFEBABE);
+        header.writeShort(0);
+        header.writeShort(52);
+        header.writeShort(pool.count + 1);
+        pool.bytes.writeTo(file);
+        body.writeTo(file);
+        return new ClassFile(pool, file.toByteArray());
+    }
+
+    private static void field(DataOutputStream out, ConstantPool pool, int access, String name, String descriptor)
+            throws IOException {
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+        out.writeShort(0);
+    }
+
+    /**
+     * Write a method with only a Code attribute. The code must not branch, so no stack map is needed.
+     */
+    private static void method(DataOutputStream out, ConstantPool pool, int access, String name, String descriptor,
+                               int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+        out.writeShort(1);
+        out.writeShort(pool.utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static int loadOpcode(Class<?> type) {
+        if (type == long.class) { return 0x16; }
+        if (type == float.class) { return 0x17; }
+        if (type == double.class) { return 0x18; }
+        if (type.isPrimitive()) { return 0x15; }
+        return 0x19;
+    }
+
+    private static int returnOpcode(Class<?> type) {
+        if (type == void.class) { return 0xB1; }
+        if (type == long.class) { return 0xAD; }
+        if (type == float.class) { return 0xAE; }
+        if (type == double.class) { return 0xAF; }
+        if (type.isPrimitive()) { return 0xAC; }
+        return 0xB0;
+    }
+
+    private static final class ClassFile {
+        final ConstantPool pool;
+        final byte[] bytes;
+
+        ClassFile(ConstantPool pool, byte[] bytes) {
+            this.pool = pool;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Deduplicating constant pool. Only has single-slot entries, so #count is also the highest index.
+     */
+    private static final class ConstantPool {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<>();
+        int count;
+
+        int utf8(String value) throws IOException {
+            return entry(1, value);
+        }
+
+        int classRef(String internalName) throws IOException {
+            return entry(7, null, utf8(internalName));
+        }
+
+        int string(String value) throws IOException {
+            return entry(8, null, utf8(value));
+        }
+
+        int fieldRef(String owner, String name, String descriptor) throws IOException {
+            return entry(9, null, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+            return entry(10, null, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        private int nameAndType(String name, String descriptor) throws IOException {
+            return entry(12, null, utf8(name), utf8(descriptor));
+        }
+
+        private int entry(int tag, String utf8, int... references) throws IOException {
+            String key = tag + " " + utf8 + " " + Arrays.toString(references);
+            Integer index = indices.get(key);
+            if (index == null) {
+                out.writeByte(tag);
+                if (utf8 != null) { out.writeUTF(utf8); }
+                for (int reference : references) {
+                    out.writeShort(reference);
+                }
+                index = ++count;
+                indices.put(key, index);
+            }
+            return index;
+        }
+    }
+}
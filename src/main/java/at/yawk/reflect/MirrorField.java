@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Bind a method of a mirror interface to a field of the mirrored class. A method without parameters reads the
+ * field, a void method with one parameter writes it.
+ *
+ * @author yawkat
+ * @see Mirrors
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface MirrorField {
+    /**
+     * Name of the field, or empty to use the name of the annotated method.
+     */
+    String value() default "";
+}
@@ -0,0 +1,368 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The resolved members of a mirror interface for one mirrored class, see {@link Mirrors}. Cached in the ClassInfo of
+ * the mirrored class or of the interface, see #of.
+ *
+ * Each mirror method gets a method handle of its exact type plus a leading Object target (ignored for static members).
+ * The mirror itself is a generated class calling those handles, see MirrorClasses, or a proxy if no class could be
+ * generated.
+ *
+ * @author yawkat
+ */
+final class MirrorPlan {
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final MethodHandle describe;
+    private static final MethodHandle rethrow;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            describe = lookup.findVirtual(MirrorPlan.class, "describe",
+                                          MethodType.methodType(String.class, Object.class));
+            rethrow = lookup.findStatic(MirrorPlan.class, "rethrow",
+                                        MethodType.methodType(Object.class, Class[].class, Throwable.class));
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private final Class<?> mirror;
+    private final Class<?> type;
+    /**
+     * Handles for each mirror method, see the class documentation.
+     */
+    private final Map<Method, MethodHandle> handles = new LinkedHashMap<>();
+    /**
+     * The first instance member used by the mirror, or null if it only mirrors static members.
+     */
+    final Member instanceMember;
+    /**
+     * <code>(Object)Object</code> constructor of the generated mirror class, or null if proxies are used.
+     */
+    private final MethodHandle factory;
+    /**
+     * <code>(Object, Object[])Object</code> handles for each mirror method for the proxy, or null if a class was
+     * generated.
+     */
+    private final Map<Method, MethodHandle> spreaders;
+    /**
+     * <code>(Object, Object[])Object</code> handles calling default methods of the mirror on a proxy, created on first
+     * use.
+     */
+    private final Map<Method, MethodHandle> defaultMethods = new ConcurrentHashMap<>();
+
+    /**
+     * The cached plan for the given interface and class. It is kept with whichever of the two is unloaded first (see
+     * Cache#owner), so a plugin interface mirroring a JDK class does not keep the plugin loaded.
+     */
+    static MirrorPlan of(Class<?> mirror, Class<?> type) {
+        return Cache.owner(type, mirror).mirrorPlan(new Key(mirror, type), key -> new MirrorPlan(key.mirror, key.type));
+    }
+
+    MirrorPlan(Class<?> mirror, Class<?> type) {
+        this.mirror = mirror;
+        this.type = type;
+        Member instanceMember = null;
+        for (Method method : mirror.getMethods()) {
+            // default methods are inherited by the generated class and called through #defaultMethod by the proxy
+            if (!Modifier.isAbstract(method.getModifiers())) { continue; }
+            MirrorField field = method.getAnnotation(MirrorField.class);
+            MirrorMethod target = method.getAnnotation(MirrorMethod.class);
+            Member member;
+            MethodHandle handle;
+            if (field != null) {
+                Field mirrored = findField(field.value().isEmpty() ? method.getName() : field.value());
+                member = mirrored;
+                handle = fieldHandle(method, mirrored);
+            } else if (target != null) {
+                Method mirrored = findMethod(method, target.value().isEmpty() ? method.getName() : target.value());
+                member = mirrored;
+                handle = rethrowing(methodHandle(method, mirrored), method, mirrored);
+            } else {
+                throw new IllegalArgumentException(
+                        "Method " + method + " of mirror is not annotated with @MirrorField or @MirrorMethod");
+            }
+            if (instanceMember == null && !Modifier.isStatic(member.getModifiers())) {
+                instanceMember = member;
+            }
+            handles.put(method, handle);
+        }
+        this.instanceMember = instanceMember;
+
+        factory = MirrorClasses.implement(mirror, handles, describe.bindTo(this));
+        if (factory == null) {
+            spreaders = new HashMap<>();
+            for (Map.Entry<Method, MethodHandle> entry : handles.entrySet()) {
+                MethodHandle handle = entry.getValue();
+                spreaders.put(entry.getKey(), handle.asType(handle.type().generic())
+                        .asSpreader(Object[].class, entry.getKey().getParameterCount()));
+            }
+        } else {
+            spreaders = null;
+        }
+    }
+
+    /**
+     * Create a mirror of the given target, or of the static members if it is null.
+     */
+    Object newInstance(Object target) {
+        if (factory == null) {
+            return Proxy.newProxyInstance(mirror.getClassLoader(), new Class<?>[]{ mirror }, new Handler(target));
+        }
+        try {
+            return (Object) factory.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            // the constructor only assigns the target
+            throw new AssertionError(t);
+        }
+    }
+
+    /**
+     * Whether mirrors are instances of a generated class instead of proxies.
+     */
+    boolean isGenerated() {
+        return factory != null;
+    }
+
+    private Field findField(String name) {
+        Field field = Cache.info(type).firstField(name);
+        if (field == null) {
+            throw new UncheckedReflectiveOperationException(new NoSuchFieldException(type.getName() + "." + name));
+        }
+        return field;
+    }
+
+    /**
+     * Find the method with the given name and the same parameter count as the mirror method. If there are several, the
+     * parameter types have to match exactly.
+     */
+    private Method findMethod(Method mirrorMethod, String name) {
+        List<Method> candidates = new ArrayList<>();
+        for (Member member : Cache.info(type).methods().byName(name)) {
+            Method method = (Method) member;
+            if (method.getParameterCount() != mirrorMethod.getParameterCount()) { continue; }
+            if (Arrays.equals(method.getParameterTypes(), mirrorMethod.getParameterTypes())) {
+                return method;
+            }
+            candidates.add(method);
+        }
+        if (candidates.isEmpty()) {
+            throw new UncheckedReflectiveOperationException(new NoSuchMethodException(
+                    type.getName() + "." + name + " with " + mirrorMethod.getParameterCount() + " parameters"));
+        }
+        if (candidates.size() > 1) {
+            throw new IllegalArgumentException("Too many methods found for " + mirrorMethod + ": " + candidates);
+        }
+        return candidates.get(0);
+    }
+
+    /**
+     * Handle for a field, with the type of the mirror method plus a leading Object target.
+     */
+    private static MethodHandle fieldHandle(Method mirrorMethod, Field field) {
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle;
+        try {
+            if (mirrorMethod.getParameterCount() == 0 && mirrorMethod.getReturnType() != void.class) {
+                handle = lookup.unreflectGetter(field);
+            } else if (mirrorMethod.getParameterCount() == 1 && mirrorMethod.getReturnType() == void.class) {
+                if (Modifier.isFinal(field.getModifiers())) {
+                    // method handles can't write final fields, use the same writers as Fields#set
+                    MethodType type = MethodType.methodType(void.class, Object.class, Object.class);
+                    FieldAccessor<Object, Object> writer = Cache.finalWriter(field);
+                    handle = lookup.findVirtual(FieldAccessor.class, "set", type)
+                            .bindTo(writer != null ? writer : new ReflectiveFieldAccessor<>(field));
+                    isStatic = false;
+                } else {
+                    handle = lookup.unreflectSetter(field);
+                }
+            } else {
+                throw new IllegalArgumentException(
+                        "Field mirror " + mirrorMethod + " is neither a getter nor a void setter");
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+        if (isStatic) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return adapt(handle, mirrorMethod, field);
+    }
+
+    /**
+     * @see #fieldHandle
+     */
+    private static MethodHandle methodHandle(Method mirrorMethod, Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return adapt(handle, mirrorMethod, method);
+    }
+
+    private static MethodHandle adapt(MethodHandle handle, Method mirrorMethod, Member member) {
+        MethodType type = MethodType.methodType(mirrorMethod.getReturnType(), mirrorMethod.getParameterTypes())
+                .insertParameterTypes(0, Object.class);
+        try {
+            return handle.asType(type);
+        } catch (WrongMethodTypeException e) {
+            throw new IllegalArgumentException("Types of " + mirrorMethod + " don't match " + member, e);
+        }
+    }
+
+    /**
+     * Make a method handle report exceptions like the mirror method declares them: checked exceptions the mirror
+     * method does not declare are wrapped in an UncheckedReflectiveOperationException. Without such exceptions the
+     * handle is returned unchanged.
+     */
+    private static MethodHandle rethrowing(MethodHandle handle, Method mirrorMethod, Method method) {
+        Class<?>[] declared = mirrorMethod.getExceptionTypes();
+        boolean covered = true;
+        for (Class<?> thrown : method.getExceptionTypes()) {
+            if (!isUnchecked(thrown) && !isAnyAssignableFrom(declared, thrown)) {
+                covered = false;
+                break;
+            }
+        }
+        if (covered) { return handle; }
+        MethodHandle handler = rethrow.bindTo(declared);
+        handler = MethodHandles.dropArguments(handler, 1, handle.type().parameterList());
+        handler = handler.asType(handler.type().changeReturnType(handle.type().returnType()));
+        return MethodHandles.catchException(handle, Throwable.class, handler);
+    }
+
+    private static boolean isUnchecked(Class<?> exception) {
+        return RuntimeException.class.isAssignableFrom(exception) || Error.class.isAssignableFrom(exception);
+    }
+
+    private static boolean isAnyAssignableFrom(Class<?>[] types, Class<?> type) {
+        for (Class<?> candidate : types) {
+            if (candidate.isAssignableFrom(type)) { return true; }
+        }
+        return false;
+    }
+
+    private static Object rethrow(Class<?>[] declared, Throwable t) throws Throwable {
+        if (isUnchecked(t.getClass()) || isAnyAssignableFrom(declared, t.getClass())) {
+            throw t;
+        }
+        throw new UncheckedReflectiveOperationException(new InvocationTargetException(t));
+    }
+
+    /**
+     * @see #defaultMethods
+     */
+    private MethodHandle defaultMethod(Method method) {
+        MethodHandle handle = defaultMethods.get(method);
+        if (handle == null) {
+            MethodHandles.Lookup lookup = Lambdas.privateLookupIn(mirror);
+            if (lookup == null) {
+                throw new UnsupportedOperationException("Cannot call default method " + method + " of a proxy mirror");
+            }
+            try {
+                handle = lookup.unreflectSpecial(method, mirror);
+            } catch (IllegalAccessException e) {
+                throw new UncheckedReflectiveOperationException(e);
+            }
+            handle = handle.asType(handle.type().generic()).asSpreader(Object[].class, method.getParameterCount());
+            defaultMethods.put(method, handle);
+        }
+        return handle;
+    }
+
+    private String describe(Object target) {
+        return mirror.getName() + " mirror of " + (target == null ? type : target);
+    }
+
+    private final class Handler implements InvocationHandler {
+        private final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            MethodHandle handle = spreaders.get(method);
+            if (handle == null && method.isDefault()) {
+                handle = defaultMethod(method);
+                Object[] arguments = args == null ? NO_ARGS : args;
+                return (Object) handle.invokeExact(proxy, arguments);
+            }
+            if (handle == null) {
+                // the Object methods every proxy has
+                switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return describe(target);
+                default:
+                    throw new AssertionError(method);
+                }
+            }
+            Object[] arguments = args == null ? NO_ARGS : args;
+            return (Object) handle.invokeExact(target, arguments);
+        }
+    }
+
+    /**
+     * Cache key of a plan, see ClassInfo#mirrorPlan.
+     */
+    static final class Key {
+        final Class<?> mirror;
+        final Class<?> type;
+
+        Key(Class<?> mirror, Class<?> type) {
+            this.mirror = mirror;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) { return false; }
+            Key other = (Key) o;
+            return mirror == other.mirror && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return mirror.hashCode() * 31 + type.hashCode();
+        }
+    }
+}
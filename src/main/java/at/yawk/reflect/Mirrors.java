@@ -0,0 +1,69 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.util.Objects;
+
+/**
+ * Typed access to the members of another class through a "mirror" interface whose methods are annotated with {@link
+ * MirrorField} or {@link MirrorMethod}:
+ *
+ * <pre>
+ * interface ListInternals {
+ *     &#64;MirrorField("elementData") Object[] elements();
+ *     &#64;MirrorMethod("grow") Object[] grow(int minCapacity);
+ * }
+ *
+ * ListInternals internals = Mirrors.of(ListInternals.class, arrayList);
+ * </pre>
+ *
+ * All members are resolved once per mirror interface and mirrored class, so missing members are reported when the
+ * first mirror is created. That first call also generates a class implementing the interface, with one constant
+ * method handle per mirror method, which costs about as much as a few lambdas. Afterwards a call through a mirror is
+ * an invokeExact on a constant handle that the JIT can inline like a direct call to the member.
+ *
+ * The generated class is defined next to the mirror interface. On java 16+ that only works for interfaces in the same
+ * module as this library (on the class path: loaded by the same class loader). Other mirrors are proxies, where every
+ * call boxes its arguments into an array and dispatches through an InvocationHandler.
+ *
+ * @author yawkat
+ */
+public class Mirrors {
+    private Mirrors() {}
+
+    /**
+     * Create a mirror of the given object.
+     *
+     * @throws UncheckedReflectiveOperationException if a mirrored member does not exist.
+     * @throws IllegalArgumentException              if the mirror interface is invalid.
+     */
+    public static <M> M of(Class<M> mirror, Object target) throws UncheckedReflectiveOperationException {
+        Objects.requireNonNull(target, "target");
+        return create(mirror, target.getClass(), target);
+    }
+
+    /**
+     * Create a mirror of the static members of the given class.
+     *
+     * @throws UncheckedReflectiveOperationException if a mirrored member does not exist.
+     * @throws IllegalArgumentException              if the mirror interface is invalid or mirrors instance members.
+     */
+    public static <M> M of(Class<M> mirror, Class<?> type) throws UncheckedReflectiveOperationException {
+        return create(mirror, Objects.requireNonNull(type, "type"), null);
+    }
+
+    private static <M> M create(Class<M> mirror, Class<?> type, Object target) {
+        if (!mirror.isInterface()) {
+            throw new IllegalArgumentException(mirror.getName() + " is not an interface");
+        }
+        MirrorPlan plan = MirrorPlan.of(mirror, type);
+        if (target == null && plan.instanceMember != null) {
+            throw new IllegalArgumentException("Cannot mirror instance member " + plan.instanceMember + " statically");
+        }
+        return mirror.cast(plan.newInstance(target));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Member;
+
+/**
+ * Overload resolution by the runtime classes of the arguments, for SelectionMode.BEST.
+ *
+ * This follows the rules of Method#invoke for applicability: null is accepted by any reference parameter, and
+ * primitive parameters accept wrapper objects that can be unboxed and widened to them. Of the applicable members, the
+ * most specific one is chosen like the compiler would; a primitive parameter is considered more specific than a
+ * reference parameter its wrapper is assignable to.
+ *
+ * @author yawkat
+ */
+final class Overloads {
+    private Overloads() {}
+
+    /**
+     * @return The most specific applicable member, or null if none is applicable. Of members with the same parameter
+     * types (bridge methods), the first one wins.
+     * @throws IllegalStateException if there is no single most specific member.
+     */
+    static Member mostSpecific(Member[] candidates, int length, Object[] args) {
+        Executable best = null;
+        boolean ambiguous = false;
+        for (int i = 0; i < length; i++) {
+            Executable candidate = (Executable) candidates[i];
+            if (!isApplicable(candidate, args)) { continue; }
+            if (best == null || isMoreSpecific(candidate, best) && !isMoreSpecific(best, candidate)) {
+                best = candidate;
+            } else if (!isMoreSpecific(best, candidate)) {
+                ambiguous = true;
+            }
+        }
+        if (ambiguous) {
+            // some candidate was not dominated by the best at that time, check whether the final best dominates it
+            for (int i = 0; i < length; i++) {
+                Executable candidate = (Executable) candidates[i];
+                if (candidate != best && isApplicable(candidate, args) && !isMoreSpecific(best, candidate)) {
+                    throw new IllegalStateException("Ambiguous arguments for " + best + " and " + candidate);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isApplicable(Executable executable, Object[] args) {
+        Class<?>[] parameterTypes = executable.getParameterTypes();
+        if (parameterTypes.length != args.length) { return false; }
+        for (int i = 0; i < args.length; i++) {
+            if (!accepts(parameterTypes[i], args[i])) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Whether Method#invoke accepts the given argument for a parameter of the given type.
+     */
+    static boolean accepts(Class<?> parameterType, Object arg) {
+        if (parameterType.isPrimitive()) {
+            return arg != null && isSubtype(unwrap(arg.getClass()), parameterType);
+        }
+        return arg == null || parameterType.isInstance(arg);
+    }
+
+    /**
+     * Whether every parameter of a is a subtype of the corresponding parameter of b. Both must have the same number of
+     * parameters.
+     */
+    private static boolean isMoreSpecific(Executable a, Executable b) {
+        Class<?>[] aTypes = a.getParameterTypes();
+        Class<?>[] bTypes = b.getParameterTypes();
+        for (int i = 0; i < aTypes.length; i++) {
+            if (!isSubtype(aTypes[i], bTypes[i])) { return false; }
+        }
+        return true;
+    }
+
+    private static boolean isSubtype(Class<?> a, Class<?> b) {
+        if (a == b) { return true; }
+        if (a.isPrimitive()) {
+            return b.isPrimitive() ? widens(a, b) : b.isAssignableFrom(wrap(a));
+        }
+        return !b.isPrimitive() && b.isAssignableFrom(a);
+    }
+
+    /**
+     * Widening primitive conversions (JLS 5.1.2).
+     */
+    private static boolean widens(Class<?> from, Class<?> to) {
+        if (from == byte.class) {
+            return to == short.class || to == int.class || to == long.class || to == float.class || to == double.class;
+        }
+        if (from == short.class || from == char.class) {
+            return to == int.class || to == long.class || to == float.class || to == double.class;
+        }
+        if (from == int.class) {
+            return to == long.class || to == float.class || to == double.class;
+        }
+        if (from == long.class) {
+            return to == float.class || to == double.class;
+        }
+        if (from == float.class) {
+            return to == double.class;
+        }
+        return false;
+    }
+
+    private static Class<?> wrap(Class<?> primitive) {
+        return MethodType.methodType(primitive).wrap().returnType();
+    }
+
+    private static Class<?> unwrap(Class<?> wrapper) {
+        return MethodType.methodType(wrapper).unwrap().returnType();
+    }
+}
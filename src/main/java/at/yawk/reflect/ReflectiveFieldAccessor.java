@@ -0,0 +1,213 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.function.Consumer;
+
+/**
+ * FieldAccessor using core reflection.
+ *
+ * @author yawkat
+ */
+final class ReflectiveFieldAccessor<T, R> implements FieldAccessor<T, R> {
+    private final Field field;
+
+    ReflectiveFieldAccessor(Field field) {
+        this.field = field;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public R get(T on) {
+        try {
+            return (R) field.get(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void set(T on, R value) {
+        write(writer -> writer.set(on, value), () -> field.set(on, value));
+    }
+
+    @Override
+    public boolean getBoolean(T on) {
+        try {
+            return field.getBoolean(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setBoolean(T on, boolean value) {
+        write(writer -> writer.setBoolean(on, value), () -> field.setBoolean(on, value));
+    }
+
+    @Override
+    public byte getByte(T on) {
+        try {
+            return field.getByte(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setByte(T on, byte value) {
+        write(writer -> writer.setByte(on, value), () -> field.setByte(on, value));
+    }
+
+    @Override
+    public char getChar(T on) {
+        try {
+            return field.getChar(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setChar(T on, char value) {
+        write(writer -> writer.setChar(on, value), () -> field.setChar(on, value));
+    }
+
+    @Override
+    public short getShort(T on) {
+        try {
+            return field.getShort(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setShort(T on, short value) {
+        write(writer -> writer.setShort(on, value), () -> field.setShort(on, value));
+    }
+
+    @Override
+    public int getInt(T on) {
+        try {
+            return field.getInt(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setInt(T on, int value) {
+        write(writer -> writer.setInt(on, value), () -> field.setInt(on, value));
+    }
+
+    @Override
+    public long getLong(T on) {
+        try {
+            return field.getLong(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setLong(T on, long value) {
+        write(writer -> writer.setLong(on, value), () -> field.setLong(on, value));
+    }
+
+    @Override
+    public float getFloat(T on) {
+        try {
+            return field.getFloat(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setFloat(T on, float value) {
+        write(writer -> writer.setFloat(on, value), () -> field.setFloat(on, value));
+    }
+
+    @Override
+    public double getDouble(T on) {
+        try {
+            return field.getDouble(on);
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    @Override
+    public void setDouble(T on, double value) {
+        write(writer -> writer.setDouble(on, value), () -> field.setDouble(on, value));
+    }
+
+    @Override
+    public Field field() {
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return field.toString();
+    }
+
+    /**
+     * Write the field through core reflection, or if it is final through the offset based writer (Cache#finalWriter)
+     * or, without one, through #setUnlocked. The lambdas don't escape, so the JIT can usually drop them.
+     *
+     * @param viaWriter The write on the final field writer.
+     * @param direct    The same write through the field itself.
+     */
+    private void write(Consumer<FieldAccessor<Object, Object>> viaWriter, Write direct) {
+        if (Modifier.isFinal(field.getModifiers())) {
+            FieldAccessor<Object, Object> writer = Cache.finalWriter(field);
+            if (writer != null) {
+                viaWriter.accept(writer);
+            } else {
+                setUnlocked(field, direct);
+            }
+            return;
+        }
+        try {
+            direct.write();
+        } catch (IllegalAccessException e) {
+            throw new UncheckedReflectiveOperationException(e);
+        }
+    }
+
+    /**
+     * Write a final field by temporarily removing its final modifier. Only used if there is no offset based writer for
+     * the field. The Field object is shared, so this is done under its lock to keep concurrent writers from restoring
+     * the modifier in the middle of another write.
+     */
+    private static void setUnlocked(Field field, Write write) {
+        if (Cache.modifiersField == null) {
+            throw new UnsupportedOperationException("Cannot write final field " + field);
+        }
+        synchronized (field) {
+            int modifiers = field.getModifiers();
+            try {
+                Cache.modifiersField.setInt(field, modifiers & ~Modifier.FINAL);
+                try {
+                    write.write();
+                } finally {
+                    Cache.modifiersField.setInt(field, modifiers);
+                }
+            } catch (IllegalAccessException e) {
+                throw new UncheckedReflectiveOperationException(e);
+            }
+        }
+    }
+
+    private interface Write {
+        void write() throws IllegalAccessException;
+    }
+}
@@ -22,4 +22,10 @@ public enum SelectionMode {
      * Use all members and return the value of the last one, or null if no member was found.
      */
     ALL,
+    /**
+     * Choose the most specific method or constructor that accepts the runtime classes of the invocation arguments,
+     * like the compiler would for the static types. Fails when there is no applicable member or no single most
+     * specific one. Not supported for fields.
+     */
+    BEST,
 }
@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+/**
+ * Memory ordering of field accesses through {@link Fields#compile(StoreOrdering)}.
+ *
+ * @author yawkat
+ */
+public enum StoreOrdering {
+    /**
+     * Plain loads and stores, like normal field accesses of a non-volatile field.
+     */
+    PLAIN,
+    /**
+     * Stores are ordered after all preceding memory accesses (lazySet / putOrdered), loads are volatile. Stores of
+     * field types without a release store fall back to volatile stores.
+     */
+    RELEASE,
+    /**
+     * Volatile loads and stores, like normal field accesses of a volatile field.
+     */
+    VOLATILE,
+}
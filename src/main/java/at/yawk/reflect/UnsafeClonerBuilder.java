@@ -8,6 +8,7 @@ package at.yawk.reflect;
 
 import java.lang.reflect.*;
 import java.util.*;
+import sun.misc.Unsafe;
 
 /**
  * @author yawkat
@@ -15,6 +16,8 @@ import java.util.*;
 public class UnsafeClonerBuilder {
     private final Set<Object> protectedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
     private final Set<Class<?>> protectedClasses = new HashSet<>();
+    private boolean detectImmutables = false;
+    private final Map<Class<?>, CloneStrategy<?>> strategies = new HashMap<>();
 
     private UnsafeClonerBuilder() {}
 
@@ -36,6 +39,7 @@ public class UnsafeClonerBuilder {
         protect(Long.class);
         protect(Float.class);
         protect(Double.class);
+        CollectionCloneStrategies.register(this);
         return this;
     }
 
@@ -49,33 +53,83 @@ public class UnsafeClonerBuilder {
         return this;
     }
 
+    /**
+     * Clone instances of exactly the given class (not of subclasses) with the given strategy instead of copying their
+     * fields. {@link #defaults()} registers strategies for the common java.util and java.util.concurrent collections.
+     */
+    public <T> UnsafeClonerBuilder strategy(Class<T> type, CloneStrategy<T> strategy) {
+        strategies.put(type, strategy);
+        return this;
+    }
+
+    /**
+     * Also protect instances of classes that are detected to be deeply immutable: enums, JDK value types such as
+     * BigDecimal, UUID or the java.time classes, and classes whose instance fields are all final and of such types
+     * (transitively). Those objects are shared with the clone instead of copied. Classes without instance fields, such
+     * as Object, are never detected, since their instances are usually locks or sentinels compared by identity; protect
+     * them explicitly if they should be shared. The analysis runs once per class.
+     */
+    public UnsafeClonerBuilder detectImmutables() {
+        detectImmutables = true;
+        return this;
+    }
+
     public Cloner build() {
         Set<Object> protectedObjects0 = Collections.newSetFromMap(new IdentityHashMap<>());
         protectedObjects0.addAll(protectedObjects);
         return new UnsafeCloner(
                 protectedObjects0,
-                new HashSet<>(protectedClasses)
+                new HashSet<>(protectedClasses),
+                detectImmutables,
+                new HashMap<>(strategies)
         );
     }
 
+    /**
+     * Walks objects using the per-class ClonePlan, so fields are never looked up or boxed.
+     */
     private static class UnsafeCloner implements Cloner {
+        private static final Unsafe unsafe = Unsafes.getUnsafe();
+        private static final CloneStrategy.Context SHALLOW = new CloneStrategy.Context() {
+            @Override
+            public <E> E clone(E object) {
+                return object;
+            }
+        };
+
         private final Set<Object> protectedObjects;
         private final Set<Class<?>> protectedClasses;
+        private final boolean detectImmutables;
+        private final Map<Class<?>, CloneStrategy<?>> strategies;
 
-        public UnsafeCloner(Set<Object> protectedObjects, Set<Class<?>> protectedClasses) {
+        public UnsafeCloner(Set<Object> protectedObjects, Set<Class<?>> protectedClasses, boolean detectImmutables,
+                            Map<Class<?>, CloneStrategy<?>> strategies) {
             this.protectedObjects = protectedObjects;
             this.protectedClasses = protectedClasses;
+            this.detectImmutables = detectImmutables;
+            this.strategies = strategies;
         }
 
         private boolean isProtected(Object o) {
             return o == null ||
                    protectedObjects.contains(o) ||
-                   protectedClasses.contains(o.getClass());
+                   isProtectedType(o.getClass());
+        }
+
+        private boolean isProtectedType(Class<?> type) {
+            return protectedClasses.contains(type) ||
+                   (detectImmutables && Immutables.isImmutable(type));
         }
 
         @Override
         public <T> T shallowClone(T object) {
             if (isProtected(object)) { return object; }
+            CloneStrategy<T> strategy = strategy(object);
+            if (strategy != null) {
+                T copy = strategy.newInstance(object);
+                strategy.copy(object, copy, SHALLOW);
+                return copy;
+            }
             return doClone(object, true);
         }
 
@@ -93,56 +147,175 @@ public class UnsafeClonerBuilder {
             } else {
                 copy = UnsafeObjectFactory.allocateInstance(type);
                 if (copyFields) {
-                    UnsafeObjectFactory.copyFields(object, copy);
+                    Cache.info(type).clonePlan().copy(object, copy);
                 }
             }
 
             return copy;
         }
 
+        /**
+         * Copies the graph depth first with an explicit stack instead of recursion, so long chains don't overflow the
+         * call stack. Each object is allocated the first time it is reached and its fields are filled when it is
+         * popped, so every object is visited exactly once.
+         */
         @Override
-        @SuppressWarnings("unchecked")
         public <T> T deepClone(T object) {
-            Map<Object, Object> clones = new IdentityHashMap<>();
+            DeepClone run = new DeepClone();
+            T copy = run.copyOf(object);
+            run.drain(0);
+            return copy;
+        }
+
+        /**
+         * Whether the given type is an array whose elements never have to be cloned, so it can be copied in bulk
+         * without scanning it: primitive arrays and arrays of a final (or enum), protected type.
+         */
+        private boolean isLeafArray(Class<?> type) {
+            if (!type.isArray()) { return false; }
+            Class<?> component = type.getComponentType();
+            if (component.isPrimitive()) { return true; }
+            // enum constants with a body are subclasses, but always immutable
+            if (component.isEnum() && detectImmutables) { return true; }
+            return Modifier.isFinal(component.getModifiers()) && isProtectedType(component);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> CloneStrategy<T> strategy(Object object) {
+            return strategies.isEmpty() ? null : (CloneStrategy<T>) strategies.get(object.getClass());
+        }
 
-            cloneDeepWithoutFieldCopy(object, clones);
+        /**
+         * State of a single deep clone. Strategies get this as their context.
+         *
+         * Objects are filled in depth-first post-order: an object that is reached while still waiting on the stack is
+         * pushed again, so it is filled before the object referencing it is complete. That order is what lets
+         * #whenComplete actions see complete clones without recursion.
+         */
+        private final class DeepClone implements CloneStrategy.Context {
+            /**
+             * Stack marker taking the place of an original, followed by the list of actions to run.
+             */
+            private final Object completion = new Object();
 
-            clones.forEach((fr, to) -> {
-                if (fr.getClass().isArray()) {
-                    int len = Array.getLength(fr);
-                    for (int i = 0; i < len; i++) {
-                        Object previous = Array.get(fr, i);
-                        Array.set(to, i, clones.getOrDefault(previous, previous));
+            private final Map<Object, Object> clones = new IdentityHashMap<>();
+            /**
+             * Originals whose copy was filled or is being filled.
+             */
+            private final Set<Object> filled = Collections.newSetFromMap(new IdentityHashMap<>());
+            /**
+             * Pairs of (original, unfilled copy).
+             */
+            private final Deque<Object> pending = new ArrayDeque<>();
+            /**
+             * Actions registered by the object currently being filled, or null.
+             */
+            private List<Runnable> completions;
+
+            /**
+             * The copy of the given object, allocated and queued for filling if it wasn't reached before.
+             */
+            @SuppressWarnings("unchecked")
+            <T> T copyOf(T object) {
+                if (isProtected(object)) { return object; }
+                Object copy = clones.get(object);
+                if (copy == null) {
+                    CloneStrategy<T> strategy = strategy(object);
+                    boolean leaf = strategy == null && isLeafArray(object.getClass());
+                    copy = strategy == null ? doClone(object, leaf) : strategy.newInstance(object);
+                    clones.put(object, copy);
+                    if (leaf) {
+                        filled.add(object);
+                    } else {
+                        pending.push(copy);
+                        pending.push(object);
                     }
-                } else {
-                    Fields.of(fr)
-                            .withoutModifier(Modifier.STATIC)
-                            .eachField(f -> {
-                                Object previous = f.get(fr);
-                                f.set(to, clones.getOrDefault(previous, previous));
-                            });
+                } else if (!filled.contains(object)) {
+                    // still waiting further down the stack, fill it before the object referencing it completes
+                    pending.push(copy);
+                    pending.push(object);
                 }
-            });
+                return (T) copy;
+            }
 
-            return (T) clones.get(object);
-        }
+            /**
+             * Fill queued copies until only the given number of entries are left on the stack.
+             */
+            @SuppressWarnings("unchecked")
+            void drain(int mark) {
+                while (pending.size() > mark) {
+                    Object from = pending.pop();
+                    Object to = pending.pop();
+                    if (from == completion) {
+                        for (Runnable action : (List<Runnable>) to) {
+                            action.run();
+                        }
+                        continue;
+                    }
+                    // pushed again earlier, see #copyOf
+                    if (!filled.add(from)) { continue; }
+
+                    int before = pending.size();
+                    List<Runnable> outer = completions;
+                    completions = null;
+                    fill(from, to);
+                    List<Runnable> actions = completions;
+                    completions = outer;
+                    if (actions != null) {
+                        // run the actions after everything the fill pushed
+                        Object[] pushed = new Object[pending.size() - before];
+                        for (int i = 0; i < pushed.length; i++) {
+                            pushed[i] = pending.pop();
+                        }
+                        pending.push(actions);
+                        pending.push(completion);
+                        for (int i = pushed.length - 1; i >= 0; i--) {
+                            pending.push(pushed[i]);
+                        }
+                    }
+                }
+            }
 
-        private void cloneDeepWithoutFieldCopy(Object object, Map<Object, Object> to) {
-            if (isProtected(object)) { return; }
-            if (to.containsKey(object)) { return; }
+            @Override
+            public <E> E clone(E object) {
+                // everything pushed after this point is reachable from the object, fill it before returning
+                int mark = pending.size();
+                E copy = copyOf(object);
+                drain(mark);
+                return copy;
+            }
 
-            Object copy = doClone(object, false);
-            to.put(object, copy);
+            @Override
+            public <E> E reference(E object) {
+                return copyOf(object);
+            }
 
-            if (object.getClass().isArray()) {
-                int len = Array.getLength(object);
-                for (int i = 0; i < len; i++) {
-                    cloneDeepWithoutFieldCopy(Array.get(object, i), to);
+            @Override
+            public void whenComplete(Runnable action) {
+                if (completions == null) {
+                    completions = new ArrayList<>(1);
+                }
+                completions.add(action);
+            }
+
+            private void fill(Object from, Object to) {
+                CloneStrategy<Object> strategy = strategy(from);
+                if (strategy != null) {
+                    strategy.copy(from, to, this);
+                } else if (from.getClass().isArray()) {
+                    // primitive arrays are never queued, see #isLeafArray
+                    Object[] source = (Object[]) from;
+                    Object[] target = (Object[]) to;
+                    for (int i = 0; i < source.length; i++) {
+                        target[i] = copyOf(source[i]);
+                    }
+                } else {
+                    ClonePlan plan = Cache.info(from.getClass()).clonePlan();
+                    plan.copyPrimitives(from, to);
+                    for (long offset : plan.referenceOffsets) {
+                        unsafe.putObject(to, offset, copyOf(unsafe.getObject(from, offset)));
+                    }
                 }
-            } else {
-                Fields.of(object)
-                        .withoutModifier(Modifier.STATIC)
-                        .each(o -> cloneDeepWithoutFieldCopy(o, to));
             }
         }
     }
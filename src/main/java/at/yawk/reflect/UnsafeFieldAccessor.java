@@ -0,0 +1,401 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import sun.misc.Unsafe;
+
+/**
+ * FieldAccessor that reads and writes through the field offset using Unsafe. Works for final fields (including static
+ * final fields) without touching the modifiers of the Field object, so it is safe to use from several threads at
+ * once and every access is a single load or store.
+ *
+ * Unsafe does no checks of its own, so the receiver and value types are checked here.
+ *
+ * @author yawkat
+ */
+final class UnsafeFieldAccessor<T, R> implements FieldAccessor<T, R> {
+    private static final Unsafe unsafe = Unsafes.hasUnsafe() ? Unsafes.getUnsafe() : null;
+
+    private final Field field;
+    private final StoreOrdering ordering;
+    /**
+     * Declaring class for instance fields, null for static fields.
+     */
+    private final Class<?> declaring;
+    /**
+     * Base object for static fields.
+     */
+    private final Object staticBase;
+    private final long offset;
+    private final Class<?> type;
+    /**
+     * Type descriptor character of the field type, 'L' for all references.
+     */
+    private final char kind;
+
+    /**
+     * @throws UnsupportedOperationException if Unsafe is not available or the field has no stable offset (record or
+     *                                       hidden class fields on newer JVMs).
+     */
+    UnsafeFieldAccessor(Field field, StoreOrdering ordering) {
+        if (unsafe == null) {
+            throw new UnsupportedOperationException("Unsafe is not available");
+        }
+        this.field = field;
+        this.ordering = ordering;
+        this.type = field.getType();
+        this.kind = type.isPrimitive() ? descriptor(type) : 'L';
+        if (Modifier.isStatic(field.getModifiers())) {
+            // the static base is only valid once the class is initialized
+            Class<?> declaring = field.getDeclaringClass();
+            try {
+                Class.forName(declaring.getName(), true, declaring.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                // hidden classes can't be found by name, but they don't have static field offsets either
+                throw new UnsupportedOperationException("Cannot initialize " + declaring.getName(), e);
+            }
+            this.declaring = null;
+            this.staticBase = unsafe.staticFieldBase(field);
+            this.offset = unsafe.staticFieldOffset(field);
+        } else {
+            this.declaring = field.getDeclaringClass();
+            this.staticBase = null;
+            this.offset = unsafe.objectFieldOffset(field);
+        }
+    }
+
+    private static char descriptor(Class<?> primitive) {
+        if (primitive == boolean.class) { return 'Z'; }
+        if (primitive == byte.class) { return 'B'; }
+        if (primitive == char.class) { return 'C'; }
+        if (primitive == short.class) { return 'S'; }
+        if (primitive == int.class) { return 'I'; }
+        if (primitive == long.class) { return 'J'; }
+        if (primitive == float.class) { return 'F'; }
+        if (primitive == double.class) { return 'D'; }
+        throw new AssertionError(primitive);
+    }
+
+    private Object base(Object on) {
+        if (declaring == null) {
+            return staticBase;
+        }
+        if (!declaring.isInstance(on)) {
+            if (on == null) {
+                throw new NullPointerException("Receiver of " + field + " is null");
+            }
+            throw new IllegalArgumentException("Cannot access " + field + " on " + on.getClass().getName());
+        }
+        return on;
+    }
+
+    private IllegalArgumentException incompatibleType() {
+        // the requested type is lost by the time we get here, see the primitive accessors below
+        return new IllegalArgumentException("Incompatible primitive type for " + field);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public R get(T on) {
+        switch (kind) {
+        case 'L':
+            Object base = base(on);
+            return (R) (ordering == StoreOrdering.PLAIN ?
+                    unsafe.getObject(base, offset) :
+                    unsafe.getObjectVolatile(base, offset));
+        case 'Z':
+            return (R) Boolean.valueOf(getBoolean(on));
+        case 'B':
+            return (R) Byte.valueOf(getByte(on));
+        case 'C':
+            return (R) Character.valueOf(getChar(on));
+        case 'S':
+            return (R) Short.valueOf(getShort(on));
+        case 'I':
+            return (R) Integer.valueOf(getInt(on));
+        case 'J':
+            return (R) Long.valueOf(getLong(on));
+        case 'F':
+            return (R) Float.valueOf(getFloat(on));
+        case 'D':
+            return (R) Double.valueOf(getDouble(on));
+        default:
+            throw new AssertionError(kind);
+        }
+    }
+
+    @Override
+    public void set(T on, R value) {
+        if (kind == 'L') {
+            if (value != null && !type.isInstance(value)) {
+                throw new IllegalArgumentException("Cannot assign " + value.getClass().getName() + " to " + field);
+            }
+            Object base = base(on);
+            switch (ordering) {
+            case PLAIN:
+                unsafe.putObject(base, offset, value);
+                break;
+            case RELEASE:
+                unsafe.putOrderedObject(base, offset, value);
+                break;
+            default:
+                unsafe.putObjectVolatile(base, offset, value);
+                break;
+            }
+        } else if (value instanceof Integer) {
+            setInt(on, (Integer) value);
+        } else if (value instanceof Long) {
+            setLong(on, (Long) value);
+        } else if (value instanceof Double) {
+            setDouble(on, (Double) value);
+        } else if (value instanceof Boolean) {
+            setBoolean(on, (Boolean) value);
+        } else if (value instanceof Float) {
+            setFloat(on, (Float) value);
+        } else if (value instanceof Byte) {
+            setByte(on, (Byte) value);
+        } else if (value instanceof Short) {
+            setShort(on, (Short) value);
+        } else if (value instanceof Character) {
+            setChar(on, (Character) value);
+        } else {
+            throw new IllegalArgumentException("Cannot assign " + value + " to " + field);
+        }
+    }
+
+    /*
+     * Primitive accessors. Each one handles its own type and otherwise delegates to the next type that can be
+     * converted by a widening primitive conversion, like Field#getInt and friends.
+     */
+
+    @Override
+    public boolean getBoolean(T on) {
+        if (kind == 'Z') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getBoolean(base, offset) :
+                    unsafe.getBooleanVolatile(base, offset);
+        }
+        throw incompatibleType();
+    }
+
+    @Override
+    public void setBoolean(T on, boolean value) {
+        if (kind == 'Z') {
+            Object base = base(on);
+            if (ordering == StoreOrdering.PLAIN) {
+                unsafe.putBoolean(base, offset, value);
+            } else {
+                unsafe.putBooleanVolatile(base, offset, value);
+            }
+        } else {
+            throw incompatibleType();
+        }
+    }
+
+    @Override
+    public byte getByte(T on) {
+        if (kind == 'B') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getByte(base, offset) :
+                    unsafe.getByteVolatile(base, offset);
+        }
+        throw incompatibleType();
+    }
+
+    @Override
+    public void setByte(T on, byte value) {
+        if (kind == 'B') {
+            Object base = base(on);
+            if (ordering == StoreOrdering.PLAIN) {
+                unsafe.putByte(base, offset, value);
+            } else {
+                unsafe.putByteVolatile(base, offset, value);
+            }
+        } else {
+            setShort(on, value);
+        }
+    }
+
+    @Override
+    public char getChar(T on) {
+        if (kind == 'C') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getChar(base, offset) :
+                    unsafe.getCharVolatile(base, offset);
+        }
+        throw incompatibleType();
+    }
+
+    @Override
+    public void setChar(T on, char value) {
+        if (kind == 'C') {
+            Object base = base(on);
+            if (ordering == StoreOrdering.PLAIN) {
+                unsafe.putChar(base, offset, value);
+            } else {
+                unsafe.putCharVolatile(base, offset, value);
+            }
+        } else {
+            setInt(on, value);
+        }
+    }
+
+    @Override
+    public short getShort(T on) {
+        if (kind == 'S') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getShort(base, offset) :
+                    unsafe.getShortVolatile(base, offset);
+        }
+        return getByte(on);
+    }
+
+    @Override
+    public void setShort(T on, short value) {
+        if (kind == 'S') {
+            Object base = base(on);
+            if (ordering == StoreOrdering.PLAIN) {
+                unsafe.putShort(base, offset, value);
+            } else {
+                unsafe.putShortVolatile(base, offset, value);
+            }
+        } else {
+            setInt(on, value);
+        }
+    }
+
+    @Override
+    public int getInt(T on) {
+        if (kind == 'I') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getInt(base, offset) :
+                    unsafe.getIntVolatile(base, offset);
+        }
+        if (kind == 'C') {
+            return getChar(on);
+        }
+        return getShort(on);
+    }
+
+    @Override
+    public void setInt(T on, int value) {
+        if (kind == 'I') {
+            Object base = base(on);
+            switch (ordering) {
+            case PLAIN:
+                unsafe.putInt(base, offset, value);
+                break;
+            case RELEASE:
+                unsafe.putOrderedInt(base, offset, value);
+                break;
+            default:
+                unsafe.putIntVolatile(base, offset, value);
+                break;
+            }
+        } else {
+            setLong(on, value);
+        }
+    }
+
+    @Override
+    public long getLong(T on) {
+        if (kind == 'J') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getLong(base, offset) :
+                    unsafe.getLongVolatile(base, offset);
+        }
+        return getInt(on);
+    }
+
+    @Override
+    public void setLong(T on, long value) {
+        if (kind == 'J') {
+            Object base = base(on);
+            switch (ordering) {
+            case PLAIN:
+                unsafe.putLong(base, offset, value);
+                break;
+            case RELEASE:
+                unsafe.putOrderedLong(base, offset, value);
+                break;
+            default:
+                unsafe.putLongVolatile(base, offset, value);
+                break;
+            }
+        } else {
+            setFloat(on, value);
+        }
+    }
+
+    @Override
+    public float getFloat(T on) {
+        if (kind == 'F') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getFloat(base, offset) :
+                    unsafe.getFloatVolatile(base, offset);
+        }
+        return getLong(on);
+    }
+
+    @Override
+    public void setFloat(T on, float value) {
+        if (kind == 'F') {
+            Object base = base(on);
+            if (ordering == StoreOrdering.PLAIN) {
+                unsafe.putFloat(base, offset, value);
+            } else {
+                unsafe.putFloatVolatile(base, offset, value);
+            }
+        } else {
+            setDouble(on, value);
+        }
+    }
+
+    @Override
+    public double getDouble(T on) {
+        if (kind == 'D') {
+            Object base = base(on);
+            return ordering == StoreOrdering.PLAIN ?
+                    unsafe.getDouble(base, offset) :
+                    unsafe.getDoubleVolatile(base, offset);
+        }
+        return getFloat(on);
+    }
+
+    @Override
+    public void setDouble(T on, double value) {
+        if (kind == 'D') {
+            Object base = base(on);
+            if (ordering == StoreOrdering.PLAIN) {
+                unsafe.putDouble(base, offset, value);
+            } else {
+                unsafe.putDoubleVolatile(base, offset, value);
+            }
+        } else {
+            throw incompatibleType();
+        }
+    }
+
+    @Override
+    public Field field() {
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return field.toString();
+    }
+}
@@ -36,8 +36,16 @@ public class UnsafeObjectFactory {
         }
     }
 
+    /**
+     * Copy all instance fields of <code>from</code> to <code>to</code>, which must be an instance of the same class
+     * or a subclass.
+     */
     public static <T> void copyFields(T from, T to) {
-        Fields.of(from).eachField(f -> f.set(to, f.get(from)));
+        if (!from.getClass().isInstance(to)) {
+            throw new IllegalArgumentException(
+                    "Cannot copy fields of " + from.getClass().getName() + " to " + to.getClass().getName());
+        }
+        Cache.info(from.getClass()).clonePlan().copy(from, to);
     }
 
     public static <T> T shallowClone(T object) {
@@ -0,0 +1,57 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.reflect.Member;
+
+/**
+ * Use count of a single member for AccessBackend.ADAPTIVE. Once the member was used #THRESHOLD times, its method
+ * handle accessor is created and remembered here, and the member stays on method handles until it is evicted from the
+ * cache.
+ *
+ * The count is updated without synchronization, lost updates only delay the switch a little. The outcome is published
+ * through a volatile field; threads racing past the threshold all get the same accessor from the cache.
+ *
+ * @author yawkat
+ */
+final class UseCounter {
+    /**
+     * Number of uses through core reflection before switching to method handles. Can be changed with the
+     * at.yawk.reflect.adaptiveThreshold system property.
+     */
+    static final int THRESHOLD = Integer.getInteger("at.yawk.reflect.adaptiveThreshold", 100);
+
+    /**
+     * No method handle could be created for this member, stay on reflection.
+     */
+    private static final Object FAILED = new Object();
+
+    private int count;
+    /**
+     * The method handle accessor (see Cache#handle), FAILED, or null while counting.
+     */
+    private volatile Object accessor;
+
+    /**
+     * Count a use of the given member and return its method handle accessor if it should be accessed through method
+     * handles, or null.
+     */
+    Object hot(Member member) {
+        Object accessor = this.accessor;
+        if (accessor == null) {
+            if (++count < THRESHOLD) { return null; }
+            try {
+                // create the accessor right away to find out whether that works at all
+                accessor = Cache.handle(member);
+            } catch (RuntimeException e) {
+                accessor = FAILED;
+            }
+            this.accessor = accessor;
+        }
+        return accessor == FAILED ? null : accessor;
+    }
+}
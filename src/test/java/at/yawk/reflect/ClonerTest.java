@@ -0,0 +1,318 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author yawkat
+ */
+public class ClonerTest {
+    @Test
+    public void testShallowClone() {
+        Node node = new Node(1, new Node(2, null));
+        node.flag = true;
+        node.c = 'x';
+        node.d = 1.5;
+        Node copy = UnsafeObjectFactory.shallowClone(node);
+        assertNotSame(node, copy);
+        assertEquals(1, copy.value);
+        assertTrue(copy.flag);
+        assertEquals('x', copy.c);
+        assertEquals(1.5, copy.d, 0);
+        assertEquals("node", copy.name);
+        assertSame(node.next, copy.next);
+    }
+
+    @Test
+    public void testDeepClone() {
+        Node node = new Node(1, new Node(2, null));
+        node.next.next = node;
+        Node copy = UnsafeObjectFactory.deepClone(node);
+        assertNotSame(node, copy);
+        assertNotSame(node.next, copy.next);
+        assertEquals(2, copy.next.value);
+        // cycles and protected objects are kept
+        assertSame(copy, copy.next.next);
+        assertSame(node.name, copy.name);
+    }
+
+    @Test
+    public void testDeepCloneLongChain() {
+        Node head = null;
+        for (int i = 0; i < 200000; i++) {
+            head = new Node(i, head);
+        }
+        Node copy = UnsafeObjectFactory.deepClone(head);
+        int count = 0;
+        for (Node original = head; original != null; original = original.next, copy = copy.next) {
+            assertNotSame(original, copy);
+            assertEquals(original.value, copy.value);
+            count++;
+        }
+        assertNull(copy);
+        assertEquals(200000, count);
+    }
+
+    @Test
+    public void testDeepCloneLongChainThroughCollections() {
+        TreeNode root = new TreeNode();
+        TreeNode leaf = root;
+        for (int i = 0; i < 100000; i++) {
+            TreeNode child = new TreeNode();
+            leaf.children.add(child);
+            leaf.byName.put("child", child);
+            leaf = child;
+        }
+        TreeNode copy = UnsafeClonerBuilder.builder().defaults().build().deepClone(root);
+        int depth = 0;
+        for (TreeNode original = root; !original.children.isEmpty(); original = original.children.get(0)) {
+            assertNotSame(original, copy);
+            assertSame(copy.children.get(0), copy.byName.get("child"));
+            copy = copy.children.get(0);
+            depth++;
+        }
+        assertTrue(copy.children.isEmpty());
+        assertEquals(100000, depth);
+    }
+
+    @Test
+    public void testHashedElementsCompleteBeforeInsertion() {
+        Set<Object> inner = new HashSet<>(Arrays.asList("a", "b"));
+        Set<Object> outer = new HashSet<>(Collections.singleton(inner));
+        // the inner set is reached first, but only filled after the outer one
+        for (List<Set<Object>> list : Arrays.asList(Arrays.asList(inner, outer), Arrays.asList(outer, inner))) {
+            List<Set<Object>> copy = UnsafeObjectFactory.deepClone(new ArrayList<>(list));
+            Set<Object> innerCopy = copy.get(list.indexOf(inner));
+            Set<Object> outerCopy = copy.get(list.indexOf(outer));
+            assertEquals(inner, innerCopy);
+            assertTrue(outerCopy.contains(innerCopy));
+            assertSame(innerCopy, outerCopy.iterator().next());
+        }
+    }
+
+    @Test
+    public void testDeepCloneArrays() {
+        double[] doubles = { 1, 2, 3 };
+        String[] strings = { "a", "b" };
+        Node[] nodes = { new Node(1, null), null };
+        nodes[1] = nodes[0];
+        Object[] root = { doubles, strings, nodes, doubles };
+
+        Object[] copy = UnsafeObjectFactory.deepClone(root);
+        assertNotSame(doubles, copy[0]);
+        assertArrayEquals(doubles, (double[]) copy[0], 0);
+        assertSame(copy[0], copy[3]);
+        assertNotSame(strings, copy[1]);
+        assertSame(strings[0], ((String[]) copy[1])[0]);
+        Node[] nodesCopy = (Node[]) copy[2];
+        assertNotSame(nodes[0], nodesCopy[0]);
+        assertEquals(1, nodesCopy[0].value);
+        assertSame(nodesCopy[0], nodesCopy[1]);
+    }
+
+    @Test
+    public void testDeepCloneProtected() {
+        String s = "protected";
+        assertSame(s, UnsafeObjectFactory.deepClone(s));
+    }
+
+    @Test
+    public void testDetectImmutables() {
+        Cloner cloner = UnsafeClonerBuilder.builder().defaults().detectImmutables().build();
+        Holder holder = new Holder();
+        Holder copy = cloner.deepClone(holder);
+        assertNotSame(holder, copy);
+        assertSame(holder.point, copy.point);
+        assertSame(holder.uuid, copy.uuid);
+        assertSame(holder.unit, copy.unit);
+        assertNotSame(holder.node, copy.node);
+        assertNotSame(holder.mutablePoint, copy.mutablePoint);
+        assertNotSame(holder.wrapper, copy.wrapper);
+        // no state, but the identity matters
+        assertNotSame(holder.lock, copy.lock);
+        assertNotSame(holder.marker, copy.marker);
+
+        // without detection, everything but the defaults is copied
+        Holder plain = UnsafeObjectFactory.deepClone(holder);
+        assertNotSame(holder.point, plain.point);
+        assertNotSame(holder.uuid, plain.uuid);
+    }
+
+    @Test
+    public void testCollectionStrategies() {
+        Node node = new Node(1, null);
+        Map<String, Object> map = new HashMap<>();
+        map.put("list", new ArrayList<>(Arrays.asList(node, node)));
+        map.put("sorted", new TreeMap<>(Collections.singletonMap("a", node)));
+        map.put("self", map);
+
+        Map<String, Object> copy = UnsafeObjectFactory.deepClone(map);
+        assertNotSame(map, copy);
+        assertEquals(HashMap.class, copy.getClass());
+        assertSame(copy, copy.get("self"));
+        List<?> list = (List<?>) copy.get("list");
+        assertEquals(2, list.size());
+        assertNotSame(node, list.get(0));
+        assertSame(list.get(0), list.get(1));
+        assertSame(list.get(0), ((Map<?, ?>) copy.get("sorted")).get("a"));
+
+        Map<String, Object> shallow = UnsafeObjectFactory.shallowClone(map);
+        shallow.remove("list");
+        assertTrue(map.containsKey("list"));
+        assertSame(map.get("sorted"), shallow.get("sorted"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSortedAndConcurrentCollections() {
+        Node node = new Node(1, null);
+        Comparator<String> order = Comparator.reverseOrder();
+        TreeSet<String> set = new TreeSet<>(order);
+        set.addAll(Arrays.asList("a", "b", "c"));
+        ConcurrentSkipListMap<String, Node> skipList = new ConcurrentSkipListMap<>(order);
+        skipList.put("a", node);
+        skipList.put("b", node);
+        ConcurrentHashMap<String, Node> concurrent = new ConcurrentHashMap<>(Collections.singletonMap("a", node));
+        ArrayDeque<Node> deque = new ArrayDeque<>(Arrays.asList(node, new Node(2, null)));
+        CopyOnWriteArrayList<Node> copyOnWrite = new CopyOnWriteArrayList<>(Arrays.asList(node, node));
+
+        List<Object> copy = UnsafeObjectFactory.deepClone(
+                new ArrayList<>(Arrays.asList(set, skipList, concurrent, deque, copyOnWrite)));
+
+        // sorted collections keep their comparator
+        TreeSet<String> setCopy = (TreeSet<String>) copy.get(0);
+        assertNotSame(set, setCopy);
+        assertSame(order, setCopy.comparator());
+        assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<>(setCopy));
+        ConcurrentSkipListMap<String, Node> skipListCopy = (ConcurrentSkipListMap<String, Node>) copy.get(1);
+        assertSame(order, skipListCopy.comparator());
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(skipListCopy.keySet()));
+        Node nodeCopy = skipListCopy.get("a");
+        assertNotSame(node, nodeCopy);
+        assertSame(nodeCopy, skipListCopy.get("b"));
+
+        // the others are rebuilt with the same contents
+        ConcurrentHashMap<String, Node> concurrentCopy = (ConcurrentHashMap<String, Node>) copy.get(2);
+        assertNotSame(concurrent, concurrentCopy);
+        assertEquals(Collections.singleton("a"), concurrentCopy.keySet());
+        assertSame(nodeCopy, concurrentCopy.get("a"));
+        ArrayDeque<Node> dequeCopy = (ArrayDeque<Node>) copy.get(3);
+        assertEquals(2, dequeCopy.size());
+        assertSame(nodeCopy, dequeCopy.peekFirst());
+        assertEquals(2, dequeCopy.peekLast().value);
+        CopyOnWriteArrayList<Node> copyOnWriteCopy = (CopyOnWriteArrayList<Node>) copy.get(4);
+        assertEquals(Arrays.asList(nodeCopy, nodeCopy), copyOnWriteCopy);
+        copyOnWriteCopy.clear();
+        assertEquals(2, copyOnWrite.size());
+    }
+
+    @Test
+    public void testLinkedHashMapCopiesFields() {
+        // no strategy on purpose, a rebuilt map would lose the access order
+        LinkedHashMap<String, Node> map = new LinkedHashMap<>(16, 0.75F, true);
+        map.put("a", new Node(1, null));
+        map.put("b", new Node(2, null));
+        map.get("a");
+
+        LinkedHashMap<String, Node> copy = UnsafeObjectFactory.deepClone(map);
+        assertEquals(LinkedHashMap.class, copy.getClass());
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(copy.keySet()));
+        assertNotSame(map.get("b"), copy.get("b"));
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(copy.keySet()));
+        copy.put("c", new Node(3, null));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testCustomStrategy() {
+        Cloner cloner = UnsafeClonerBuilder.builder()
+                .strategy(Node.class, new CloneStrategy<Node>() {
+                    @Override
+                    public Node newInstance(Node original) {
+                        return new Node(original.value + 1, null);
+                    }
+
+                    @Override
+                    public void copy(Node original, Node copy, Context context) {
+                        copy.next = context.clone(original.next);
+                    }
+                })
+                .build();
+        Node copy = cloner.deepClone(new Node(1, new Node(2, null)));
+        assertEquals(2, copy.value);
+        assertEquals(3, copy.next.value);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCopyFieldsChecksType() {
+        UnsafeObjectFactory.copyFields(new Node(0, null), new Object());
+    }
+
+    static class Base {
+        final String name = "node";
+        boolean flag;
+        char c;
+    }
+
+    static class Node extends Base {
+        final int value;
+        double d;
+        Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    static final class Point {
+        final int x = 1;
+        final String label = "p";
+        final Point origin;
+
+        Point(Point origin) {
+            this.origin = origin;
+        }
+    }
+
+    static final class MutablePoint {
+        int x;
+    }
+
+    /**
+     * All fields final, but the field type is not immutable.
+     */
+    static final class Wrapper {
+        final MutablePoint point = new MutablePoint();
+    }
+
+    static final class TreeNode {
+        final List<TreeNode> children = new ArrayList<>();
+        final Map<String, TreeNode> byName = new HashMap<>();
+    }
+
+    static class Holder {
+        final Point point = new Point(new Point(null));
+        final UUID uuid = UUID.randomUUID();
+        final TimeUnit unit = TimeUnit.SECONDS;
+        final Node node = new Node(1, null);
+        final MutablePoint mutablePoint = new MutablePoint();
+        final Wrapper wrapper = new Wrapper();
+        final Object lock = new Object();
+        final Marker marker = new Marker();
+    }
+
+    static final class Marker {}
+}
@@ -6,9 +6,13 @@
 
 package at.yawk.reflect;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * @author yawkat
@@ -27,8 +31,257 @@ public class FieldsTest {
         Fields.ofType(ClassWithOneMember.class).on(obj).set("test");
         assertEquals("test", obj.string);
     }
+
+    @Test
+    public void testFilterDoesNotAffectOtherSelectors() {
+        ClassWithTwoMembers obj = new ClassWithTwoMembers();
+        Fields.of(obj).name("b").set("test");
+        Fields.of(obj).name("a").set("other");
+        assertEquals("other", obj.a);
+        assertEquals("test", obj.b);
+    }
+
+    @Test
+    public void testChainedFilters() {
+        ClassWithInheritedMember obj = new ClassWithInheritedMember();
+        Fields<?, Object> strings = Fields.of(obj).withoutModifier(Modifier.STATIC)
+                .match(f -> f.getType() == String.class).finish();
+        assertEquals(2, count(strings));
+        // filtering a finished selector leaves it unchanged
+        assertEquals("own", strings.match(f -> f.getName().startsWith("o")).get());
+        assertEquals(2, count(strings));
+
+        // FIRST with filters only walks the hierarchy until a match, the superclass is never resolved
+        MemberCache.invalidate(ClassWithInheritedMember.class);
+        MemberCache.invalidate(ClassWithOneMember.class);
+        assertEquals("own", Fields.of(obj).withoutModifier(Modifier.STATIC)
+                .match(f -> !f.getName().equals("string")).first().get());
+        assertEquals(0, Cache.info(ClassWithOneMember.class).weight());
+        // the modifier filter applies too
+        assertEquals("shared", Fields.of(obj).modifier(Modifier.STATIC).first().get());
+        assertEquals(0, Cache.info(ClassWithOneMember.class).weight());
+        assertEquals(0, count(Fields.of(obj).name("own").name("string")));
+    }
+
+    @Test
+    public void testQuery() {
+        MemberQuery<Field> strings = MemberQuery.fields().withoutModifier(Modifier.STATIC)
+                .match(f -> f.getType() == String.class);
+        assertEquals(2, strings.apply(ClassWithInheritedMember.class).size());
+        assertEquals(2, strings.apply(ClassWithTwoMembers.class).size());
+        // memoized per class
+        assertSame(strings.resolve(ClassWithTwoMembers.class), strings.resolve(ClassWithTwoMembers.class));
+
+        ClassWithInheritedMember obj = new ClassWithInheritedMember();
+        assertEquals("own", Fields.ofType(ClassWithInheritedMember.class, strings.first()).on(obj).get());
+        assertEquals(2, count(Fields.ofType(ClassWithInheritedMember.class, strings).on(obj)));
+    }
+
+    @Test
+    public void testQueryCacheEntries() {
+        MemberCache.invalidate(ClassWithTwoMembers.class);
+        ClassInfo info = Cache.info(ClassWithTwoMembers.class);
+        MemberQuery<Field> query = stringFields();
+        assertEquals(2, query.apply(ClassWithTwoMembers.class).size());
+        long weight = info.weight();
+
+        // a query built again from the same non-capturing lambda shares the entry while the first one is reachable
+        assertEquals(query, stringFields());
+        assertSame(query.resolve(ClassWithTwoMembers.class),
+                   stringFields().first().resolve(ClassWithTwoMembers.class));
+        assertEquals(weight, info.weight());
+
+        // a capturing lambda is a new entry, weighted with its members
+        String prefix = "";
+        MemberQuery<Field> capturing = MemberQuery.fields().match(f -> f.getName().startsWith(prefix));
+        assertEquals(2, capturing.apply(ClassWithTwoMembers.class).size());
+        assertEquals(weight + 3, info.weight());
+        // results are only cached while their query is reachable, so keep both in use up to here
+        assertEquals(2, query.apply(ClassWithTwoMembers.class).size());
+        assertEquals(2, capturing.apply(ClassWithTwoMembers.class).size());
+    }
+
+    private static MemberQuery<Field> stringFields() {
+        return MemberQuery.fields().withoutModifier(Modifier.STATIC).match(f -> f.getType() == String.class);
+    }
+
+    private static int count(Fields<?, ?> fields) {
+        int[] count = { 0 };
+        fields.each(value -> count[0]++);
+        return count[0];
+    }
+
+    @Test
+    public void testFirstFindsInheritedField() {
+        ClassWithInheritedMember obj = new ClassWithInheritedMember();
+        obj.string = "inherited";
+        assertEquals("inherited", Fields.of(obj).name("string").first().get());
+        assertEquals("own", Fields.of(obj).name("own").first().get());
+    }
+
+    @Test
+    public void testCompile() {
+        FieldAccessor<ClassWithTwoMembers, String> accessor =
+                Fields.<ClassWithTwoMembers, String>ofType(ClassWithTwoMembers.class).name("a").compile();
+        ClassWithTwoMembers first = new ClassWithTwoMembers();
+        ClassWithTwoMembers second = new ClassWithTwoMembers();
+        accessor.set(first, "first");
+        accessor.set(second, "second");
+        assertEquals("first", first.a);
+        assertEquals("second", accessor.get(second));
+    }
+
+    @Test
+    public void testMethodHandleBackend() {
+        ClassWithTwoMembers obj = new ClassWithTwoMembers();
+        Fields.of(obj).backend(AccessBackend.METHOD_HANDLES).name("a").set("test");
+        assertEquals("test", obj.a);
+        assertEquals("test", Fields.of(obj).backend(AccessBackend.METHOD_HANDLES).name("a").get());
+        assertEquals("constant", Fields.of(ClassWithDiamond.class).backend(AccessBackend.METHOD_HANDLES)
+                .name("CONSTANT").get());
+    }
+
+    @Test
+    public void testPrimitives() {
+        for (AccessBackend backend : AccessBackend.values()) {
+            ClassWithPrimitives obj = new ClassWithPrimitives();
+            Fields.of(obj).backend(backend).name("i").setInt(5);
+            Fields.of(obj).backend(backend).name("d").setDouble(1.5);
+            assertEquals(5, Fields.of(obj).backend(backend).name("i").getInt());
+            // widening like Field#getLong
+            assertEquals(5L, Fields.of(obj).backend(backend).name("i").getLong());
+            assertEquals(1.5, Fields.of(obj).backend(backend).name("d").getDouble(), 0);
+
+            FieldAccessor<ClassWithPrimitives, Integer> accessor =
+                    Fields.<ClassWithPrimitives, Integer>ofType(ClassWithPrimitives.class)
+                            .backend(backend).name("i").compile();
+            accessor.setInt(obj, 6);
+            assertEquals(6, obj.i);
+            assertEquals(6, accessor.getInt(obj));
+        }
+    }
+
+    @Test
+    public void testBadAccessReportedLikeReflection() {
+        for (AccessBackend backend : AccessBackend.values()) {
+            // twice the adaptive threshold, so the adaptive backend is checked with both implementations
+            for (int i = 0; i < UseCounter.THRESHOLD * 2; i++) {
+                checkBadAccess(backend);
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void checkBadAccess(AccessBackend backend) {
+        ClassWithBoxed obj = new ClassWithBoxed();
+        Fields<?, Object> boxed = Fields.of(obj).backend(backend).name("boxed").finish();
+        assertEquals(5, (int) boxed.get());
+        assertThrows(IllegalArgumentException.class, boxed::getInt);
+        assertThrows(IllegalArgumentException.class, () -> boxed.setInt(1));
+        assertThrows(IllegalArgumentException.class, () -> boxed.set("str"));
+
+        // unboxing and widening, but no narrowing
+        Fields<?, Object> wide = Fields.of(obj).backend(backend).name("wide").finish();
+        wide.set((short) 3);
+        assertEquals(3L, obj.wide);
+        assertThrows(IllegalArgumentException.class, () -> wide.set(1.5));
+        assertThrows(IllegalArgumentException.class, () -> wide.set(null));
+        assertThrows(IllegalArgumentException.class, wide::getInt);
+
+        FieldAccessor accessor = Fields.ofType(ClassWithBoxed.class).backend(backend).name("boxed").compile();
+        assertThrows(IllegalArgumentException.class, () -> accessor.get("not a ClassWithBoxed"));
+        assertThrows(IllegalArgumentException.class, () -> accessor.set(new Object(), 1));
+        assertThrows(NullPointerException.class, () -> accessor.get(null));
+    }
+
+    private static void assertThrows(Class<? extends Throwable> expected, Runnable access) {
+        try {
+            access.run();
+        } catch (Throwable t) {
+            assertEquals(expected, t.getClass());
+            return;
+        }
+        fail("Expected " + expected.getName());
+    }
+
+    @Test
+    public void testInterfaceConstantThroughDiamond() {
+        assertEquals("constant", Fields.of(ClassWithDiamond.class).name("CONSTANT").get());
+    }
+
+    @Test
+    public void testFinalFields() {
+        ClassWithFinals instance = new ClassWithFinals();
+        Fields.of(instance).name("value").set("changed");
+        assertEquals("changed", Fields.of(instance).name("value").get());
+        Fields.of(ClassWithFinals.class).name("counter").setInt(5);
+        assertEquals(5, Fields.of(ClassWithFinals.class).name("counter").getInt());
+
+        // static final fields have no setter handle, the handle accessor falls back to the same writers
+        for (AccessBackend backend : AccessBackend.values()) {
+            Fields<?, ?> counter = Fields.of(ClassWithFinals.class).backend(backend).name("counter");
+            counter.setShort((short) 6);
+            assertEquals(6L, counter.getLong());
+            Fields.of(instance).backend(backend).name("value").set(backend.name());
+            assertEquals(backend.name(), instance.value);
+        }
+    }
+
+    @Test
+    public void testCompileWithOrdering() {
+        ClassWithPrimitives instance = new ClassWithPrimitives();
+        FieldAccessor<ClassWithPrimitives, Integer> i =
+                Fields.<ClassWithPrimitives, Integer>ofType(ClassWithPrimitives.class)
+                        .name("i").compile(StoreOrdering.RELEASE);
+        i.setInt(instance, 3);
+        assertEquals(3, instance.i);
+        i.set(instance, 4);
+        assertEquals(4L, i.getLong(instance));
+        FieldAccessor<ClassWithPrimitives, Double> d =
+                Fields.<ClassWithPrimitives, Double>ofType(ClassWithPrimitives.class)
+                        .name("d").compile(StoreOrdering.VOLATILE);
+        d.setInt(instance, 2);
+        assertEquals(2.0, d.get(instance), 0);
+    }
+
 }
 
 class ClassWithOneMember {
     String string = null;
 }
+
+class ClassWithTwoMembers {
+    String a = null;
+    String b = null;
+}
+
+class ClassWithInheritedMember extends ClassWithOneMember {
+    static String shared = "shared";
+
+    String own = "own";
+}
+
+class ClassWithBoxed {
+    Integer boxed = 5;
+    long wide;
+}
+
+class ClassWithPrimitives {
+    int i;
+    double d;
+}
+
+interface InterfaceWithConstant {
+    String CONSTANT = "constant";
+}
+
+interface ExtendingInterface extends InterfaceWithConstant {}
+
+class ClassWithDiamond implements InterfaceWithConstant, ExtendingInterface {}
+
+class ClassWithFinals {
+    // not a compile-time constant, so reads aren't inlined
+    static final int counter = Integer.parseInt("0");
+
+    final String value = String.valueOf("initial");
+}
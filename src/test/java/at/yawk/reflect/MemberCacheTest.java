@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author yawkat
+ */
+public class MemberCacheTest {
+    private final long maximumWeight = MemberCache.getMaximumWeight();
+
+    @After
+    public void restore() {
+        MemberCache.setMaximumWeight(maximumWeight);
+    }
+
+    @Test
+    public void testInvalidate() {
+        ClassInfo before = Cache.info(ClassWithOneMember.class);
+        Fields.of(new ClassWithOneMember()).set("test");
+        assertTrue(before.weight() > 0);
+
+        MemberCache.invalidate(ClassWithOneMember.class);
+        assertEquals(0, before.weight());
+        assertNotSame(before, Cache.info(ClassWithOneMember.class));
+
+        ClassWithOneMember obj = new ClassWithOneMember();
+        Fields.of(obj).set("test");
+        assertEquals("test", obj.string);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidateQueryLoader() throws Exception {
+        ClassLoader loader = new MirrorsTest.IsolatingClassLoader(InstanceFieldPredicate.class);
+        Constructor<?> constructor = loader.loadClass(InstanceFieldPredicate.class.getName()).getDeclaredConstructor();
+        constructor.setAccessible(true);
+        MemberQuery<Field> query = MemberQuery.fields().match((Predicate<Field>) constructor.newInstance());
+
+        MemberQuery.fields().apply(ClassWithTwoMembers.class);
+        ClassInfo info = Cache.info(ClassWithTwoMembers.class);
+        long weight = info.weight();
+        assertEquals(2, query.apply(ClassWithTwoMembers.class).size());
+        assertEquals(weight + 3, info.weight());
+
+        // the result is cached on another class, but must not keep the loader of the predicate alive
+        MemberCache.invalidate(loader);
+        assertEquals(weight, info.weight());
+        assertSame(info, Cache.info(ClassWithTwoMembers.class));
+        // the query is still reachable, only its result was dropped
+        assertEquals(2, query.apply(ClassWithTwoMembers.class).size());
+    }
+
+    @Test
+    public void testCollectedQuery() {
+        MemberCache.invalidate(ClassWithTwoMembers.class);
+        ClassInfo info = Cache.info(ClassWithTwoMembers.class);
+        String prefix = "";
+        MemberQuery<Field> query = MemberQuery.fields().match(f -> f.getName().startsWith(prefix));
+        assertEquals(2, query.apply(ClassWithTwoMembers.class).size());
+        long weight = info.weight();
+
+        // the cache must not keep the query (and the loader of its predicates) alive
+        Reference<?> reference = new WeakReference<>(query);
+        query = null;
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+        }
+        assumeTrue(reference.get() == null);
+        assertEquals(weight - 3, info.weight());
+    }
+
+    @Test
+    public void testEviction() {
+        Fields.of(new ClassWithOneMember()).set("test");
+        Fields.of(new ClassWithTwoMembers()).name("a").set("test");
+        ClassInfo info = Cache.info(ClassWithTwoMembers.class);
+        assertTrue(info.weight() > 0);
+
+        MemberCache.setMaximumWeight(0);
+        assertEquals(0, info.weight());
+
+        // still usable, just resolved again
+        ClassWithTwoMembers obj = new ClassWithTwoMembers();
+        Fields.of(obj).name("b").set("test");
+        assertEquals("test", obj.b);
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        MemberCacheMXBean statistics = MemberCache.statistics();
+        MemberCache.invalidate(ClassWithOneMember.class);
+        long misses = statistics.getFieldMisses();
+        long hits = statistics.getFieldHits();
+
+        Fields.of(new ClassWithOneMember()).set("test");
+        assertTrue(statistics.getFieldMisses() > misses);
+        Fields.of(new ClassWithOneMember()).set("test");
+        assertTrue(statistics.getFieldHits() > hits);
+        assertTrue(statistics.getCachedClasses() > 0);
+        assertTrue(statistics.getEstimatedRetainedBytes() > 0);
+
+        MemberCache.registerMBean();
+        MemberCache.registerMBean();
+        assertEquals(statistics.getMaximumWeight(), ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName("at.yawk.reflect:type=MemberCache"), "MaximumWeight"));
+    }
+
+    @Test
+    public void testPreload() {
+        MemberCache.invalidate(ClassWithTwoMembers.class);
+        MemberCache.preload(Arrays.asList(ClassWithOneMember.class, ClassWithTwoMembers.class));
+        assertTrue(Cache.info(ClassWithTwoMembers.class).weight() > 0);
+    }
+}
+
+class InstanceFieldPredicate implements Predicate<Field> {
+    @Override
+    public boolean test(Field field) {
+        return !Modifier.isStatic(field.getModifiers());
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author yawkat
+ */
+public class MethodsTest {
+    public interface StringLength {
+        int length(String s);
+    }
+
+    @Test
+    public void testOverriddenMethodsAreHidden() {
+        assertEquals("sub", Methods.of(new SubClass()).name("name").invoke());
+        assertEquals("base", Methods.of(new BaseClass()).name("name").invoke());
+    }
+
+    @Test
+    public void testCovariantOverrideHidesBase() {
+        // SubClass declares the covariant override plus its bridge method, BaseClass#covariant is hidden
+        Methods.of(new SubClass()).name("covariant").eachMethod(
+                m -> assertEquals(SubClass.class, m.getDeclaringClass()));
+    }
+
+    @Test
+    public void testMethodHandleBackend() {
+        assertEquals("sub", Methods.of(new SubClass()).backend(AccessBackend.METHOD_HANDLES).name("name").invoke());
+        assertEquals("ab", Methods.of(StaticMethods.class).backend(AccessBackend.METHOD_HANDLES)
+                .name("concat").invoke("a", "b"));
+        assertEquals(2, (int) Methods.of(StaticMethods.class).backend(AccessBackend.METHOD_HANDLES)
+                .name("count").invoke((Object) new String[]{ "a", "b" }));
+    }
+
+    @Test
+    public void testMethodHandleBackendWrapsExceptions() {
+        try {
+            Methods.of(StaticMethods.class).backend(AccessBackend.METHOD_HANDLES).name("fail").invoke();
+            fail();
+        } catch (UncheckedReflectiveOperationException e) {
+            assertTrue(e.getCause() instanceof InvocationTargetException);
+            assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testFixedArityInvoke() {
+        assertEquals("sub", Methods.of(new SubClass()).name("name").invoke0());
+        assertEquals("ab", Methods.of(StaticMethods.class).name("concat").invoke2("a", "b"));
+        assertEquals(2, (int) Methods.of(StaticMethods.class).name("count").invoke1(new String[]{ "a", "b" }));
+        assertEquals("ab", Constructors.of(StaticMethods.class).invoke2("a", "b").value);
+        try {
+            Methods.of(StaticMethods.class).name("concat").invoke1("a");
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    @Test
+    public void testBadCallsReportedLikeReflection() throws NoSuchMethodException {
+        for (AccessBackend backend : AccessBackend.values()) {
+            // some calls twice the adaptive threshold, so they are made with both implementations
+            for (int i = 0; i < UseCounter.THRESHOLD * 2; i++) {
+                checkBadCalls(backend);
+            }
+        }
+        // the adaptive backend really switched, so both of its implementations were checked
+        assertNotNull(Cache.hotHandle(StaticMethods.class.getDeclaredMethod("concat", String.class, String.class)));
+        assertNotNull(Cache.hotHandle(SubClass.class.getDeclaredMethod("name")));
+        assertNotNull(Cache.hotHandle(StaticMethods.class.getDeclaredConstructor(String.class, String.class)));
+    }
+
+    @Test
+    public void testDefaultBackendIsAdaptive() {
+        // so testBadCallsReportedLikeReflection covers the default too
+        assertEquals(AccessBackend.ADAPTIVE, ((MethodsImpl<?, ?>) Methods.of(StaticMethods.class)).backend);
+        assertEquals(AccessBackend.ADAPTIVE, ((ConstructorsImpl<?>) Constructors.of(StaticMethods.class)).backend);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void checkBadCalls(AccessBackend backend) {
+        Methods<?, Object> concat = Methods.of(StaticMethods.class).backend(backend).name("concat").finish();
+        assertEquals("ab", concat.invoke("a", "b"));
+        assertThrows(IllegalArgumentException.class, () -> concat.invoke(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> concat.invoke2(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> concat.invoke("a"));
+        assertThrows(IllegalArgumentException.class, () -> concat.invoke3("a", "b", "c"));
+
+        // unboxing and widening, but no narrowing
+        Methods<?, Long> twice = Methods.<Long>of(StaticMethods.class).backend(backend).name("twice").finish();
+        assertEquals(4L, (long) twice.invoke(2));
+        assertEquals(4L, (long) twice.invoke1((short) 2));
+        assertThrows(IllegalArgumentException.class, () -> twice.invoke(2.0));
+        assertThrows(IllegalArgumentException.class, () -> twice.invoke((Object) null));
+
+        Methods name = Methods.<SubClass, String>ofType(SubClass.class).backend(backend).name("name").finish();
+        assertEquals("sub", name.on(new SubClass()).invoke());
+        assertThrows(IllegalArgumentException.class, () -> name.on("not a SubClass").invoke());
+        assertThrows(IllegalArgumentException.class, () -> name.on(new BaseClass()).invoke0());
+        assertThrows(NullPointerException.class, () -> name.statics().invoke());
+
+        Constructors<StaticMethods> constructor = Constructors.of(StaticMethods.class).backend(backend).finish();
+        assertEquals("ab", constructor.invoke("a", "b").value);
+        assertThrows(IllegalArgumentException.class, () -> constructor.invoke(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> constructor.invoke2(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> constructor.invoke("a"));
+    }
+
+    private static void assertThrows(Class<? extends Throwable> expected, Runnable call) {
+        try {
+            call.run();
+        } catch (Throwable t) {
+            assertEquals(expected, t.getClass());
+            return;
+        }
+        fail("Expected " + expected.getName());
+    }
+
+    @Test
+    public void testAsFunction() {
+        Function<SubClass, String> name = Methods.<SubClass, String>ofType(SubClass.class).name("name")
+                .asFunction(Function.class);
+        assertEquals("sub", name.apply(new SubClass()));
+        Supplier<String> bound = Methods.<String>of(new SubClass()).name("secret").asFunction(Supplier.class);
+        assertEquals("secret", bound.get());
+        BinaryOperator<String> concat = Methods.of(StaticMethods.class).name("concat").asFunction(BinaryOperator.class);
+        assertEquals("ab", concat.apply("a", "b"));
+        BiFunction<String, String, StaticMethods> constructor =
+                Constructors.of(StaticMethods.class).asFactory(BiFunction.class);
+        assertEquals("ab", constructor.apply("a", "b").value);
+        assertEquals(BaseClass.class, Constructors.of(BaseClass.class).asSupplier().get().getClass());
+
+        // the implementation is generated once per interface and member, bound receivers stay separate
+        Supplier<String> other = Methods.<String>of(new SubClass()).name("secret").asFunction(Supplier.class);
+        assertSame(bound.getClass(), other.getClass());
+        assertNotSame(bound, other);
+        assertSame(name.getClass(), Methods.<SubClass, String>ofType(SubClass.class).name("name")
+                .asFunction(Function.class).getClass());
+    }
+
+    @Test
+    public void testAsFunctionOfOtherLoader() throws Exception {
+        ClassLoader loader = new MirrorsTest.IsolatingClassLoader(StringLength.class);
+        Class<?> iface = loader.loadClass(StringLength.class.getName());
+        Object length = Methods.of(String.class).name("length").asFunction(iface);
+        assertEquals(3, iface.getMethod("length", String.class).invoke(length, "abc"));
+
+        // cached with the interface: String is never unloaded, so it must not hold the loader
+        assertEquals(0, Cache.info(String.class).clearReferencesTo(loader));
+        assertTrue(Cache.info(iface).weight() > 0);
+    }
+
+    @Test
+    public void testBestOverload() {
+        Methods<?, String> describe = Methods.<String>of(Overloaded.class).name("describe").best().finish();
+        assertEquals("string", describe.invoke("a"));
+        assertEquals("int", describe.invoke(1));
+        assertEquals("long", describe.invoke(1L));
+        assertEquals("object", describe.invoke(new Object()));
+        assertEquals("string", describe.invoke((Object) null));
+        assertEquals("int", describe.invoke1(2));
+        assertEquals("string", describe.invoke1("b"));
+        assertEquals("object int", describe.invoke2(new Object(), 1));
+        assertEquals("short", Constructors.of(Overloaded.class).best().invoke((short) 1).value);
+    }
+
+    @Test
+    public void testAdaptiveBackendSwitchesTransparently() {
+        // same results and exceptions before and after switching to method handles
+        for (int i = 0; i < UseCounter.THRESHOLD * 2; i++) {
+            assertEquals("ab", Methods.of(StaticMethods.class).backend(AccessBackend.ADAPTIVE)
+                    .name("concat").invoke("a", "b"));
+            try {
+                Methods.of(StaticMethods.class).backend(AccessBackend.ADAPTIVE).name("fail").invoke();
+                fail();
+            } catch (UncheckedReflectiveOperationException e) {
+                assertTrue(e.getCause().getCause() instanceof IOException);
+            }
+        }
+        // the counter hands out the cached handle itself
+        Method concat = Methods.of(StaticMethods.class).name("concat").handle();
+        assertSame(Cache.methodHandle(concat), Cache.hotHandle(concat));
+    }
+
+    @Test
+    public void testNameIndexMatchesScan() {
+        for (String name : new String[]{ "describe", "name", "covariant", "inherited", "fromInterface", "missing" }) {
+            for (Class<?> type : new Class<?>[]{ Overloaded.class, SubClass.class }) {
+                // name() on an unfiltered selector uses the index, on a filtered copy it scans
+                Methods<?, Object> unfiltered = Methods.of(type).all();
+                Methods<?, Object> filtered = Methods.of(type).all().match(m -> !m.getName().equals("toString"))
+                        .finish();
+                assertEquals(selected(unfiltered.name(name)), selected(filtered.name(name)));
+            }
+        }
+        assertEquals(6, selected(Methods.of(Overloaded.class).all().name("describe")).size());
+    }
+
+    private static List<Method> selected(Methods<?, ?> methods) {
+        List<Method> found = new ArrayList<>();
+        methods.eachMethod(found::add);
+        return found;
+    }
+
+    @Test
+    public void testInheritedMethodsAreVisible() {
+        assertEquals("base", Methods.of(new SubClass()).name("inherited").invoke());
+        assertEquals("default", Methods.of(new SubClass()).name("fromInterface").invoke());
+    }
+}
+
+interface InterfaceWithDefault {
+    default String fromInterface() {
+        return "default";
+    }
+
+    Object covariant();
+}
+
+class BaseClass implements InterfaceWithDefault {
+    String name() {
+        return "base";
+    }
+
+    String inherited() {
+        return "base";
+    }
+
+    @Override
+    public Object covariant() {
+        return "base";
+    }
+}
+
+class SubClass extends BaseClass {
+    @Override
+    String name() {
+        return "sub";
+    }
+
+    @Override
+    public String covariant() {
+        return "sub";
+    }
+
+    private String secret() {
+        return "secret";
+    }
+}
+
+class StaticMethods {
+    final String value;
+
+    StaticMethods(String a, String b) {
+        this.value = a + b;
+    }
+
+    static String concat(String a, String b) {
+        return a + b;
+    }
+
+    static long twice(long l) {
+        return l * 2;
+    }
+
+    static int count(String... strings) {
+        return strings.length;
+    }
+
+    static void fail() throws IOException {
+        throw new IOException();
+    }
+}
+
+class Overloaded {
+    final String value;
+
+    Overloaded(short s) {
+        value = "short";
+    }
+
+    Overloaded(long l) {
+        value = "long";
+    }
+
+    static String describe(Object o) {
+        return "object";
+    }
+
+    static String describe(String s) {
+        return "string";
+    }
+
+    static String describe(int i) {
+        return "int";
+    }
+
+    static String describe(long l) {
+        return "long";
+    }
+
+    static String describe(Object o, long l) {
+        return "object long";
+    }
+
+    static String describe(Object o, int i) {
+        return "object int";
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.reflect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author yawkat
+ */
+public class MirrorsTest {
+    @Test
+    public void testInstanceMirror() {
+        ClassWithPrimitives target = new ClassWithPrimitives();
+        PrimitivesMirror mirror = Mirrors.of(PrimitivesMirror.class, target);
+        mirror.i(5);
+        assertEquals(5, target.i);
+        assertEquals(5, mirror.i());
+        target.d = 1.5;
+        assertEquals(1.5, (Double) mirror.boxedD(), 0);
+
+        SubClass sub = new SubClass();
+        assertEquals("sub", Mirrors.of(SubClassMirror.class, sub).name());
+        assertEquals("secret", Mirrors.of(SubClassMirror.class, sub).secret());
+    }
+
+    @Test
+    public void testStaticMirror() {
+        StaticsMirror mirror = Mirrors.of(StaticsMirror.class, StaticMethods.class);
+        assertEquals("ab", mirror.concat("a", "b"));
+        assertEquals("constant", Mirrors.of(ConstantMirror.class, ClassWithDiamond.class).constant());
+    }
+
+    @Test
+    public void testGeneratedMirror() {
+        ClassWithPrimitives target = new ClassWithPrimitives();
+        PrimitivesMirror mirror = Mirrors.of(PrimitivesMirror.class, target);
+        assertTrue(MirrorPlan.of(PrimitivesMirror.class, ClassWithPrimitives.class).isGenerated());
+        assertFalse(Proxy.isProxyClass(mirror.getClass()));
+        assertEquals(PrimitivesMirror.class.getName() + " mirror of " + target, mirror.toString());
+        assertNotEquals(mirror, Mirrors.of(PrimitivesMirror.class, target));
+        mirror.d(2.5);
+        assertEquals(2.5, target.d, 0);
+        target.i = 3;
+        assertEquals(6, mirror.twice());
+
+        StaticsMirror statics = Mirrors.of(StaticsMirror.class, StaticMethods.class);
+        assertEquals(6L, statics.twice(3));
+        assertEquals(StaticsMirror.class.getName() + " mirror of " + StaticMethods.class, statics.toString());
+    }
+
+    @Test
+    public void testFinalFieldSetter() {
+        ClassWithFinals target = new ClassWithFinals();
+        FinalsMirror mirror = Mirrors.of(FinalsMirror.class, target);
+        mirror.value("changed");
+        assertEquals("changed", target.value);
+        assertEquals("changed", mirror.value());
+    }
+
+    @Test
+    public void testCheckedExceptions() throws Exception {
+        StaticsMirror mirror = Mirrors.of(StaticsMirror.class, StaticMethods.class);
+        try {
+            mirror.fail();
+            fail();
+        } catch (UncheckedReflectiveOperationException e) {
+            assertEquals(IOException.class, e.getCause().getCause().getClass());
+        }
+        try {
+            Mirrors.of(DeclaringMirror.class, StaticMethods.class).fail();
+            fail();
+        } catch (IOException expected) {}
+    }
+
+    @Test
+    public void testInvalidateMirrorLoader() throws Exception {
+        ClassLoader loader = new IsolatingClassLoader(PrimitivesMirror.class);
+        Class<?> mirror = loader.loadClass(PrimitivesMirror.class.getName());
+        assertNotSame(PrimitivesMirror.class, mirror);
+
+        // a different runtime package, so the package-private interface is not accessible from here
+        Method getter = mirror.getMethod("i");
+        getter.setAccessible(true);
+
+        ClassWithPrimitives target = new ClassWithPrimitives();
+        target.i = 5;
+        assertEquals(5, getter.invoke(Mirrors.of(mirror, target)));
+        // a proxy, since the interface is not in the module of the library
+        Object proxy = Mirrors.of(mirror, target);
+        assertTrue(Proxy.isProxyClass(proxy.getClass()));
+        Method twice = mirror.getMethod("twice");
+        twice.setAccessible(true);
+        assertEquals(10, twice.invoke(proxy));
+        ClassInfo info = Cache.info(ClassWithPrimitives.class);
+        long weight = info.weight();
+        ClassInfo mirrorInfo = Cache.info(mirror);
+        assertTrue(mirrorInfo.weight() > 0);
+
+        // the plan is cached on the interface, whose loader delegates to the one of the target, so it goes with it
+        assertEquals(0, info.clearReferencesTo(loader));
+        MemberCache.invalidate(loader);
+        assertEquals(0, mirrorInfo.weight());
+        assertEquals(weight, info.weight());
+        assertSame(info, Cache.info(ClassWithPrimitives.class));
+        assertEquals(5, getter.invoke(Mirrors.of(mirror, target)));
+    }
+
+    /**
+     * Defines its own copy of one class, and delegates all others.
+     */
+    static final class IsolatingClassLoader extends ClassLoader {
+        private final String name;
+
+        IsolatingClassLoader(Class<?> isolated) {
+            super(isolated.getClassLoader());
+            this.name = isolated.getName();
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(this.name)) { return super.loadClass(name, resolve); }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) { return loaded; }
+                String resource = name.replace('.', '/') + ".class";
+                try (InputStream in = getParent().getResourceAsStream(resource)) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    for (int n; (n = in.read(buffer)) != -1; ) {
+                        bytes.write(buffer, 0, n);
+                    }
+                    return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissingMemberFailsOnCreation() {
+        try {
+            Mirrors.of(MissingMirror.class, new SubClass());
+            fail();
+        } catch (UncheckedReflectiveOperationException e) {
+            assertEquals(NoSuchMethodException.class, e.getCause().getClass());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStaticMirrorOfInstanceMember() {
+        Mirrors.of(PrimitivesMirror.class, ClassWithPrimitives.class);
+    }
+}
+
+interface PrimitivesMirror {
+    @MirrorField
+    int i();
+
+    @MirrorField
+    void i(int i);
+
+    @MirrorField("d")
+    Object boxedD();
+
+    @MirrorField
+    void d(double d);
+
+    // not a mirror method
+    default int twice() {
+        return i() * 2;
+    }
+}
+
+interface SubClassMirror {
+    @MirrorMethod
+    String name();
+
+    @MirrorMethod
+    Object secret();
+}
+
+interface StaticsMirror {
+    @MirrorMethod
+    String concat(Object a, Object b);
+
+    @MirrorMethod
+    long twice(long l);
+
+    @MirrorMethod
+    void fail();
+}
+
+interface DeclaringMirror {
+    @MirrorMethod
+    void fail() throws IOException;
+}
+
+interface FinalsMirror {
+    @MirrorField
+    String value();
+
+    @MirrorField
+    void value(String value);
+}
+
+interface ConstantMirror {
+    @MirrorField("CONSTANT")
+    String constant();
+}
+
+interface MissingMirror {
+    @MirrorMethod
+    void missing();
+}